@@ -23,6 +23,8 @@ package com.jive.oss.sdp;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.Value;
 
 @Value
@@ -32,10 +34,22 @@ public class Attribute
   private String key;
   private String value;
 
+  // the well known key, if it is one. not part of equality, as it's derived from the key.
+  @Getter(AccessLevel.NONE)
+  private transient SdpAttributeKey known;
+
   public Attribute(String key, String value)
+  {
+    this.known = (key == null) ? null : SdpAttributeKey.lookup(key);
+    this.key = (this.known == null) ? key : this.known.key();
+    this.value = value;
+  }
+
+  Attribute(String key, String value, SdpAttributeKey known)
   {
     this.key = key;
     this.value = value;
+    this.known = known;
   }
 
   public Attribute(String key)
@@ -43,23 +57,70 @@ public class Attribute
     this(key, null);
   }
 
+  /**
+   * the well known key of this attribute, or null if it isn't one.
+   */
+
+  public SdpAttributeKey wellKnownKey()
+  {
+    return this.known;
+  }
+
+  /**
+   * true if this attribute has the given well known key. Cheaper than comparing the key strings.
+   */
+
+  public boolean is(SdpAttributeKey key)
+  {
+    return this.known == key;
+  }
+
+  /**
+   * creates an attribute from a key and value, sharing the key string (and for property attributes, the instance) when the key is well
+   * known.
+   */
+
+  static Attribute of(CharSequence key, CharSequence value)
+  {
+    final SdpAttributeKey known = SdpAttributeKey.lookup(key);
+    if (known == null)
+    {
+      return new Attribute(key.toString(), (value == null) ? null : value.toString(), null);
+    }
+    if (value == null)
+    {
+      return known.flag();
+    }
+    return new Attribute(known.key(), value.toString(), known);
+  }
+
   public String toString()
   {
     if (value != null)
     {
-      return String.format("%s:%s", key, value);
+      return key + ":" + value;
     }
     return key;
   }
 
+  SdpWriter writeTo(final SdpWriter w)
+  {
+    w.text(this.key);
+    if (this.value != null)
+    {
+      w.write(':').text(this.value);
+    }
+    return w;
+  }
+
   public static Attribute fromString(String value)
   {
     int pos = value.indexOf(':');
     if (pos == -1)
     {
-      return new Attribute(value);
+      return of(value, null);
     }
-    return new Attribute(value.substring(0, pos), value.substring(pos + 1));
+    return of(value.substring(0, pos), value.substring(pos + 1));
   }
 
   public <K, V, R> R parse(Function<String, K> key, Function<String, V> value, BiFunction<K, V, R> factory)
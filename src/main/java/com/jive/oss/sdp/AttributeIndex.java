@@ -0,0 +1,137 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The positions of each attribute key in an attribute list, so lookups by key don't scan the list.
+ * 
+ * The model holds a read-only snapshot of its attributes rather than the list it was given (see {@link SdpLists#snapshot(List)}), so an
+ * index is built once per instance on first lookup, and a wither creates a new instance (with no index) rather than changing the list
+ * under it.
+ * 
+ */
+
+final class AttributeIndex
+{
+
+  private static final int[] NONE = new int[0];
+
+  static final AttributeIndex EMPTY = new AttributeIndex(Collections.emptyMap(), -1);
+
+  // each key's positions, in order.
+  private final Map<String, int[]> positions;
+
+  // the position of the first direction attribute, or -1.
+  private final int direction;
+
+  private AttributeIndex(final Map<String, int[]> positions, final int direction)
+  {
+    this.positions = positions;
+    this.direction = direction;
+  }
+
+  static AttributeIndex of(final List<Attribute> attributes)
+  {
+
+    if (attributes == null || attributes.isEmpty())
+    {
+      return EMPTY;
+    }
+
+    // counted first, so each key's positions fit an array of exactly the right size (keys like ssrc or candidate can repeat many times).
+    final Map<String, int[]> remaining = new HashMap<>(attributes.size() * 2);
+
+    for (int i = 0; i < attributes.size(); ++i)
+    {
+      final int[] count = remaining.computeIfAbsent(attributes.get(i).getKey(), k -> new int[1]);
+      count[0]++;
+    }
+
+    final Map<String, int[]> positions = new HashMap<>(remaining.size() * 2);
+    int direction = -1;
+
+    for (int i = 0; i < attributes.size(); ++i)
+    {
+
+      final Attribute a = attributes.get(i);
+      final int[] count = remaining.get(a.getKey());
+
+      int[] p = positions.get(a.getKey());
+
+      if (p == null)
+      {
+        p = new int[count[0]];
+        positions.put(a.getKey(), p);
+      }
+
+      p[p.length - count[0]--] = i;
+
+      if (direction == -1 && Media.isDirection(a))
+      {
+        direction = i;
+      }
+
+    }
+
+    return new AttributeIndex(positions, direction);
+
+  }
+
+  boolean contains(final String key)
+  {
+    return this.positions.containsKey(key);
+  }
+
+  /**
+   * the position of the first attribute with the given key, or -1.
+   */
+
+  int first(final String key)
+  {
+    final int[] p = this.positions.get(key);
+    return (p == null) ? -1 : p[0];
+  }
+
+  /**
+   * the positions of the attributes with the given key, in order. The array must not be modified.
+   */
+
+  int[] all(final String key)
+  {
+    final int[] p = this.positions.get(key);
+    return (p == null) ? NONE : p;
+  }
+
+  /**
+   * the position of the first direction attribute, or -1.
+   */
+
+  int direction()
+  {
+    return this.direction;
+  }
+
+}
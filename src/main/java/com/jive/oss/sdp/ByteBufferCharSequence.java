@@ -0,0 +1,85 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read-only view over a range of SDP bytes held in a (heap or direct) {@link ByteBuffer}.
+ * 
+ * Only absolute reads are used, so the buffer's position, limit and mark are never touched. As with {@link ByteCharSequence}, fields are
+ * only copied out of the buffer when they are decoded into strings for the model.
+ * 
+ */
+
+final class ByteBufferCharSequence implements CharSequence
+{
+
+  private final ByteBuffer buffer;
+  private final int offset;
+  private final int length;
+
+  ByteBufferCharSequence(final ByteBuffer buffer, final int offset, final int length)
+  {
+    if (offset < 0 || length < 0 || offset + length > buffer.limit())
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    this.buffer = buffer;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  @Override
+  public int length()
+  {
+    return this.length;
+  }
+
+  @Override
+  public char charAt(final int index)
+  {
+    return (char) (this.buffer.get(this.offset + index) & 0xFF);
+  }
+
+  @Override
+  public CharSequence subSequence(final int start, final int end)
+  {
+    if (start < 0 || end > this.length || start > end)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    return new ByteBufferCharSequence(this.buffer, this.offset + start, end - start);
+  }
+
+  @Override
+  public String toString()
+  {
+    final byte[] bytes = new byte[this.length];
+    for (int i = 0; i < this.length; ++i)
+    {
+      bytes[i] = this.buffer.get(this.offset + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
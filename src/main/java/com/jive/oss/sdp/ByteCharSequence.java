@@ -0,0 +1,116 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A read-only view over a range of SDP bytes.
+ * 
+ * SDP structure (type letters, '=', separators, numbers) is plain ASCII, so the parser can walk the bytes as chars directly. Only when a
+ * field is kept in the model is it decoded (as UTF-8) into a String. The underlying array is not copied, so it must not be modified while
+ * the view is in use.
+ * 
+ */
+
+final class ByteCharSequence implements CharSequence
+{
+
+  private final byte[] bytes;
+  private final int offset;
+  private final int length;
+
+  ByteCharSequence(final byte[] bytes, final int offset, final int length)
+  {
+    if (offset < 0 || length < 0 || offset + length > bytes.length)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    this.bytes = bytes;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  ByteCharSequence(final byte[] bytes)
+  {
+    this(bytes, 0, bytes.length);
+  }
+
+  /**
+   * the array this is a view of.
+   */
+
+  byte[] array()
+  {
+    return this.bytes;
+  }
+
+  /**
+   * the index in {@link #array()} of the first character.
+   */
+
+  int arrayOffset()
+  {
+    return this.offset;
+  }
+
+  @Override
+  public int length()
+  {
+    return this.length;
+  }
+
+  @Override
+  public char charAt(final int index)
+  {
+    return (char) (this.bytes[this.offset + index] & 0xFF);
+  }
+
+  @Override
+  public CharSequence subSequence(final int start, final int end)
+  {
+    if (start < 0 || end > this.length || start > end)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    return new ByteCharSequence(this.bytes, this.offset + start, end - start);
+  }
+
+  @Override
+  public String toString()
+  {
+    return new String(this.bytes, this.offset, this.length, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * decodes [start, end) of this view without creating an intermediate view.
+   */
+
+  String toString(final int start, final int end)
+  {
+    if (start < 0 || end > this.length || start > end)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    return new String(this.bytes, this.offset + start, end - start, StandardCharsets.UTF_8);
+  }
+
+}
@@ -0,0 +1,77 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * A reusable window onto a range of some other text, used to hand fields to an {@link SdpHandler} without allocating.
+ * 
+ * {@link #subSequence(int, int)} and {@link #toString()} return stable values, so they are safe to keep after the window moves.
+ * 
+ */
+
+final class CharSlice implements CharSequence
+{
+
+  private CharSequence text;
+  private int start;
+  private int end;
+
+  CharSlice set(final CharSequence text, final int start, final int end)
+  {
+    this.text = text;
+    this.start = start;
+    this.end = end;
+    return this;
+  }
+
+  @Override
+  public int length()
+  {
+    return this.end - this.start;
+  }
+
+  @Override
+  public char charAt(final int index)
+  {
+    if (index < 0 || index >= this.end - this.start)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    return this.text.charAt(this.start + index);
+  }
+
+  @Override
+  public CharSequence subSequence(final int start, final int end)
+  {
+    if (start < 0 || end > this.end - this.start || start > end)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    return this.text.subSequence(this.start + start, this.start + end);
+  }
+
+  @Override
+  public String toString()
+  {
+    return SdpUtils.substring(this.text, this.start, this.end);
+  }
+
+}
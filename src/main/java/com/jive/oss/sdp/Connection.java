@@ -70,6 +70,17 @@ public class Connection
 
   }
 
+  SdpWriter writeTo(final SdpWriter w)
+  {
+    w.text(this.networkType).write(' ').text(this.addressType);
+    // as toString(), which trims an empty address.
+    if (this.address == null || !this.address.isEmpty())
+    {
+      w.write(' ').slot(SdpTemplate.Slot.ADDRESS, this.address);
+    }
+    return w;
+  }
+
   public static Connection create(final InetAddress addr)
   {
     if (addr instanceof Inet4Address)
@@ -39,4 +39,14 @@ public class InvalidSessionDescriptionException extends Exception
     super(string);
   }
 
+  /**
+   * @param writableStackTrace
+   *          false to skip capturing the stack trace, for when bad SDP is expected and needs to be cheap to reject.
+   */
+
+  public InvalidSessionDescriptionException(String string, boolean writableStackTrace)
+  {
+    super(string, null, false, writableStackTrace);
+  }
+
 }
@@ -0,0 +1,113 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The media list of a lazily parsed {@link SessionDescription}.
+ * 
+ * Only the offsets of each media section are recorded up front. A {@link Media} is parsed from its section the first time it is fetched
+ * (with the same {@link SdpParserOptions} as the rest of the SDP), and kept for subsequent calls. {@link Media} is immutable, so if two
+ * threads race on the first access they both just parse the same section and one of the (equal) results wins.
+ * 
+ */
+
+final class LazyMediaList extends AbstractList<Media> implements RandomAccess
+{
+
+  private final CharSequence text;
+  private final SdpParserOptions options;
+
+  // section i is [offsets[i], offsets[i + 1])
+  private final int[] offsets;
+
+  private final Media[] medias;
+
+  private LazyMediaList(final CharSequence text, final SdpParserOptions options, final int[] offsets, final int count)
+  {
+    this.text = text;
+    this.options = options;
+    this.offsets = offsets;
+    this.medias = new Media[count];
+  }
+
+  @Override
+  public Media get(final int index)
+  {
+
+    Media media = this.medias[index];
+
+    if (media == null)
+    {
+      final SdpReader reader = new SdpReader(this.text, this.offsets[index], this.offsets[index + 1]);
+      media = new SdpParser(reader, this.options).readMedia();
+      this.medias[index] = media;
+    }
+
+    return media;
+
+  }
+
+  @Override
+  public int size()
+  {
+    return this.medias.length;
+  }
+
+  static final class Builder
+  {
+
+    private final CharSequence text;
+    private final SdpParserOptions options;
+    private int[] offsets = new int[4];
+    private int count;
+
+    Builder(final CharSequence text, final SdpParserOptions options)
+    {
+      this.text = text;
+      this.options = options;
+    }
+
+    /**
+     * records the start of the next media section.
+     */
+
+    void mark(final int offset)
+    {
+      if (this.count + 1 >= this.offsets.length)
+      {
+        this.offsets = Arrays.copyOf(this.offsets, this.offsets.length * 2);
+      }
+      this.offsets[this.count++] = offset;
+    }
+
+    LazyMediaList build(final int end)
+    {
+      this.offsets[this.count] = end;
+      return new LazyMediaList(this.text, this.options, this.offsets, this.count);
+    }
+
+  }
+
+}
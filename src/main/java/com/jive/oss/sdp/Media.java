@@ -24,18 +24,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.IntPredicate;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import com.jive.oss.sdp.SdpCryptoConfig.Entry;
 
-import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -45,7 +44,6 @@ import lombok.experimental.Wither;
 
 @Builder
 @Wither
-@AllArgsConstructor(access = AccessLevel.PRIVATE)
 @EqualsAndHashCode
 public class Media
 {
@@ -55,6 +53,9 @@ public class Media
 
   private final int port;
 
+  // the optional "/<number of ports>" suffix of the port, or 0 if there isn't one.
+  private final int numberOfPorts;
+
   @NonNull
   private final String protocol;
 
@@ -68,6 +69,44 @@ public class Media
   @Singular
   private final List<String> unknowns;
 
+  // the rendered form, and the text this was parsed from if it is still a faithful copy of it.
+  private final transient SerializedForm serialized = new SerializedForm();
+
+  // typed views of the attributes, decoded on first use. The attributes are a snapshot, and withers create a new instance, so these never
+  // go stale.
+  private final transient Decoded decoded = new Decoded();
+
+  private static final class Decoded
+  {
+    volatile List<RtpMapEntry> rtpmap;
+    volatile PayloadMap payloadMap;
+    volatile Optional<SdpCryptoConfig> crypto;
+    volatile Optional<Integer> ptime;
+    volatile Optional<Integer> maxptime;
+    volatile AttributeIndex index;
+  }
+
+  // used by the builder and withers. lists are held as read-only snapshots, as the rendering and decoded views are memoized.
+  private Media(
+      @NonNull final String type,
+      final int port,
+      final int numberOfPorts,
+      @NonNull final String protocol,
+      final List<String> formats,
+      final Connection connection,
+      final List<Attribute> attributes,
+      final List<String> unknowns)
+  {
+    this.type = type;
+    this.port = port;
+    this.numberOfPorts = numberOfPorts;
+    this.protocol = protocol;
+    this.formats = SdpLists.snapshot(formats);
+    this.connection = connection;
+    this.attributes = SdpLists.snapshot(attributes);
+    this.unknowns = SdpLists.snapshot(unknowns);
+  }
+
   /**
    * The type, e.g audio, video, image.
    */
@@ -82,6 +121,15 @@ public class Media
     return this.port;
   }
 
+  /**
+   * The number of ports, if the m= line gives one (as in "m=video 49170/2 RTP/AVP 31"), else 0.
+   */
+
+  public int numberOfPorts()
+  {
+    return this.numberOfPorts;
+  }
+
   /**
    * The protocol, e.g RTP/AVP
    */
@@ -91,158 +139,422 @@ public class Media
     return this.protocol;
   }
 
+  /**
+   * the formats, as a read-only view.
+   */
+
   public List<String> formats()
   {
-    if (this.formats == null)
-      return Collections.emptyList();
-    return new ArrayList<>(formats);
+    return SdpLists.view(this.formats);
   }
 
   public String singleAttributeValue(final String key)
   {
-    return this.attributes.stream().filter(a -> key.equals(a.getKey())).findFirst()
-        .orElse(new Attribute("", null)).getValue();
+    final int idx = this.index().first(key);
+    return (idx == -1) ? null : this.attributes.get(idx).getValue();
   }
 
+  /**
+   * the attributes, as a read-only view.
+   */
+
   public List<Attribute> attributes()
   {
-    if (this.attributes == null)
-      return Collections.emptyList();
-    return new ArrayList<>(this.attributes);
+    return SdpLists.view(this.attributes);
   }
 
   public Media withAttribute(final Attribute attr)
   {
+    return this.withAttributes(SdpLists.append(this.attributes, attr));
+  }
 
-    List<Attribute> updated = new ArrayList<>();
+  public Media withAttribute(final String key, final String value)
+  {
+    return this.withAttribute(new Attribute(key, value));
+  }
 
-    if (attributes != null)
+  public boolean hasAttribute(final String key)
+  {
+    return this.index().contains(key);
+  }
+
+  /**
+   * the positions of the attributes by key, built on first use.
+   */
+
+  private AttributeIndex index()
+  {
+    AttributeIndex index = this.decoded.index;
+    if (index == null)
     {
-      updated.addAll(attributes);
+      index = AttributeIndex.of(this.attributes);
+      this.decoded.index = index;
     }
+    return index;
+  }
 
-    updated.add(attr);
+  /**
+   * lines which aren't otherwise modeled (e.g, "b=AS:64"), in the order they appeared.
+   */
 
-    return this.withAttributes(updated);
+  public List<String> unknowns()
+  {
+    return this.unknowns;
   }
 
-  public Media withAttribute(final String key, final String value)
+  SerializedForm serialized()
   {
-    return this.withAttribute(new Attribute(key, value));
+    return this.serialized;
   }
 
-  public boolean hasAttribute(final String key)
+  /**
+   * a copy which is rendered from its model, rather than sharing this one's source text or rendering.
+   */
+
+  Media detached()
+  {
+    return new Media(
+        this.type,
+        this.port,
+        this.numberOfPorts,
+        this.protocol,
+        this.formats,
+        this.connection,
+        this.attributes,
+        this.unknowns);
+  }
+
+  // the lists as held, for SdpEditor.
+
+  List<String> formatList()
+  {
+    return this.formats;
+  }
+
+  List<Attribute> attributeList()
   {
-    return this.attributes.stream().filter(a -> key.equals(a.getKey())).findAny().isPresent();
+    return this.attributes;
   }
 
+  /**
+   * The SDP text of this media section. Rendered on first use, after which the same String is returned.
+   */
+
   @Override
   public String toString()
   {
+    return this.serialized.string(this::render);
+  }
 
-    final StringBuilder sb = new StringBuilder();
+  void writeTo(final SdpWriter w)
+  {
+    w.write(this.serialized, this::render);
+  }
+
+  /**
+   * The exact number of bytes in the UTF-8 encoding of the media section (as written by {@link SdpWriter}), worked out from the model
+   * without rendering it.
+   */
 
-    sb.append(initialLine(this)).append("\r\n");
+  public int serializedLength()
+  {
+    return this.serialized.length(this::render);
+  }
+
+  private void render(final SdpWriter w)
+  {
+
+    if (this.serialized.hasSource() && w.copiesSource())
+    {
+      this.serialized.writeSource(w);
+      return;
+    }
+
+    this.writeInitialLine(w).eol();
+
+    w.lines(this.unknowns, "i", true);
 
     if (this.connection != null)
     {
-      sb.append("c=").append(this.connection).append("\r\n");
+      this.connection.writeTo(w.ascii("c=")).eol();
     }
 
-    for (final Attribute a : this.attributes())
+    w.lines(this.unknowns, "i", false);
+
+    if (this.attributes != null)
     {
-      sb.append("a=").append(a).append("\r\n");
+      for (final Attribute a : this.attributes)
+      {
+        a.writeTo(w.ascii("a=")).eol();
+      }
     }
 
-    return sb.toString();
   }
 
   public static String initialLine(Media m)
   {
-
     final StringBuilder sb = new StringBuilder();
+    m.writeInitialLine(SdpWriter.of(sb));
+    return sb.toString();
+  }
+
+  private SdpWriter writeInitialLine(final SdpWriter w)
+  {
 
-    sb.append("m=").append(m.type).append(" ").append(m.port).append(" ").append(m.protocol).append(" ");
+    w.ascii("m=").text(this.type).write(' ').slot(SdpTemplate.Slot.PORT, this.port);
 
-    if (m.formats != null)
+    if (this.numberOfPorts != 0)
     {
-      sb.append(m.formats.stream().collect(Collectors.joining(" ")));
+      w.write('/').number(this.numberOfPorts);
     }
 
-    return sb.toString();
-  }
+    w.write(' ').text(this.protocol).write(' ');
 
-  public Optional<SdpDirection> direction()
-  {
-
-    for (final Attribute a : this.attributes)
+    if (this.formats instanceof PayloadTypeList)
     {
-      switch (a.getKey())
+      final PayloadTypeList types = (PayloadTypeList) this.formats;
+      for (int i = 0; i < types.size(); ++i)
       {
-        case "sendonly":
-          return Optional.of(SdpDirection.SendOnly);
-        case "recvonly":
-          return Optional.of(SdpDirection.RecvOnly);
-        case "inactive":
-          return Optional.of(SdpDirection.Inactive);
-        case "sendrecv":
-          return Optional.of(SdpDirection.SendRecv);
-        default:
-          break;
+        if (i > 0)
+        {
+          w.write(' ');
+        }
+        w.number(types.getInt(i));
+      }
+    }
+    else if (this.formats != null)
+    {
+      for (int i = 0; i < this.formats.size(); ++i)
+      {
+        if (i > 0)
+        {
+          w.write(' ');
+        }
+        w.text(this.formats.get(i));
       }
     }
 
-    return Optional.empty();
+    return w;
 
   }
 
+  public Optional<SdpDirection> direction()
+  {
+    final int idx = this.index().direction();
+    return (idx == -1) ? Optional.empty() : Optional.of(direction(this.attributes.get(idx)));
+  }
+
   public Media filterFormats(final Predicate<String> filter)
   {
+
+    final List<String> formats = (this.formats instanceof PayloadTypeList)
+        ? ((PayloadTypeList) this.formats).filter(pt -> filter.test(PayloadTypeList.name(pt)))
+        : this.formats.stream().filter(filter).collect(Collectors.toList());
+
     return this
-        .withFormats(this.formats.stream().filter(filter).collect(Collectors.toList()))
+        .withFormats(formats)
         .withAttributes(this.attributes.stream().filter(a -> this.filterRtpMap(a, filter)).collect(
             Collectors.toList()));
+
+  }
+
+  /**
+   * keeps only the payload types that match the filter, along with their rtpmap and fmtp attributes.
+   *
+   * @throws IllegalStateException
+   *           if the formats are not RTP payload types.
+   */
+
+  public Media filterPayloadTypes(final IntPredicate filter)
+  {
+
+    final PayloadTypeList types = PayloadTypeList.from((this.formats == null) ? Collections.<String> emptyList() : this.formats);
+
+    if (types == null)
+    {
+      throw new IllegalStateException("formats are not RTP payload types");
+    }
+
+    return this
+        .withFormats(types.filter(filter))
+        .withAttributes(SdpLists.removeIf(this.attributes, a -> {
+          final int pt = payloadType(a);
+          return pt != -1 && !filter.test(pt);
+        }));
+
+  }
+
+  /**
+   * the payload types of this media, without boxing. Formats which aren't payload types (e.g, for non RTP media) are skipped.
+   */
+
+  public IntStream payloadTypes()
+  {
+    if (this.formats instanceof PayloadTypeList)
+    {
+      return ((PayloadTypeList) this.formats).intStream();
+    }
+    return this.formats().stream()
+        .mapToInt(f -> PayloadTypeList.parseType(f, 0, f.length()))
+        .filter(pt -> pt != -1);
+  }
+
+  public boolean hasPayloadType(final int pt)
+  {
+    if (this.formats instanceof PayloadTypeList)
+    {
+      return ((PayloadTypeList) this.formats).containsInt(pt);
+    }
+    return this.payloadTypes().anyMatch(e -> e == pt);
+  }
+
+  /**
+   * the payload type an rtpmap or fmtp attribute refers to, or -1 if it isn't one of them.
+   */
+
+  static int payloadType(final Attribute a)
+  {
+    if ((a.is(SdpAttributeKey.RTPMAP) || a.is(SdpAttributeKey.FMTP)) && a.getValue() != null)
+    {
+      final String value = a.getValue();
+      final int idx = value.indexOf(' ');
+      return PayloadTypeList.parseType(value, 0, (idx == -1) ? value.length() : idx);
+    }
+    return -1;
+  }
+
+  /**
+   * true for RTP based protocols (e.g RTP/AVP, UDP/TLS/RTP/SAVPF), whose formats are payload types.
+   */
+
+  static boolean isRtp(final CharSequence protocol)
+  {
+    final int end = protocol.length() - 3;
+    for (int i = 0; i < end; ++i)
+    {
+      if (protocol.charAt(i) == 'R' && protocol.charAt(i + 1) == 'T' && protocol.charAt(i + 2) == 'P' && protocol.charAt(i + 3) == '/')
+      {
+        return true;
+      }
+    }
+    return false;
   }
 
   private boolean filterRtpMap(final Attribute a, final Predicate<String> filter)
   {
-    if (a.getKey().equals("rtpmap") || a.getKey().equals("fmtp"))
+    if (a.is(SdpAttributeKey.RTPMAP) || a.is(SdpAttributeKey.FMTP))
     {
       return filter.test(a.getValue().substring(0, a.getValue().indexOf(' ')));
     }
     return true;
   }
 
+  /**
+   * the rtpmap entries for each format, falling back to the static payload types. Decoded once, and shared between calls.
+   */
+
   public List<RtpMapEntry> rtpmap()
   {
-    final Map<Integer, RtpMapEntry> mapping = this.attributes().stream()
-        .filter(a -> a.getKey().equals("rtpmap"))
-        .map(a -> RtpMapEntry.parse(a.getValue()))
-        .collect(Collectors.toMap(
-            e -> e.getId(),
-            e -> e,
-            (a, b) -> a,
-            () -> new LinkedHashMap<>()));
 
-    return this.formats.stream()
-        .map(id -> Integer.parseInt(id))
-        .map(id -> mapping.computeIfAbsent(id, k -> PayloadMap.lookupStatic(k)))
-        .filter((f) -> f != null) // in case we don't find it in our default map
-        .collect(Collectors.toList());
+    List<RtpMapEntry> rtpmap = this.decoded.rtpmap;
+
+    if (rtpmap == null)
+    {
+
+      final Map<Integer, RtpMapEntry> mapping = PayloadMap.rtpmaps(this.attributes());
+
+      rtpmap = Collections.unmodifiableList(this.payloadTypes()
+          .mapToObj(id -> mapping.computeIfAbsent(id, k -> PayloadMap.lookupStatic(k)))
+          .filter((f) -> f != null) // in case we don't find it in our default map
+          .collect(Collectors.toList()));
+
+      this.decoded.rtpmap = rtpmap;
+
+    }
+
+    return rtpmap;
+
   }
 
+  /**
+   * the payload map of this media. Decoded once, and shared between calls.
+   */
+
   public PayloadMap payloadMap()
   {
-    return new PayloadMap(formats(), attributes());
+
+    PayloadMap payloadMap = this.decoded.payloadMap;
+
+    if (payloadMap == null)
+    {
+      final List<Attribute> attributes = this.attributes();
+      payloadMap = new PayloadMap(
+          this.payloadTypes().boxed().collect(Collectors.toList()),
+          PayloadMap.rtpmaps(attributes),
+          PayloadMap.fmtps(attributes));
+      this.decoded.payloadMap = payloadMap;
+    }
+
+    return payloadMap;
+
   }
 
+  /**
+   * A copy with the given direction attribute. An existing direction attribute is replaced in place (in which case the copy's rendering
+   * is spliced from this one's, if it has been rendered), otherwise it is added at the end.
+   */
+
   public Media withDirection(final SdpDirection d)
   {
-    final List<Attribute> attrs = attributes == null
-        ? new ArrayList<>()
-        : this.attributes.stream().filter(a -> !isDirection(a)).collect(Collectors.toList());
-    attrs.add(new Attribute(d.toString().toLowerCase(), null));
-    return this.withAttributes(attrs);
+
+    final Attribute flag = SdpAttributeKey.of(d).flag();
+    final int idx = directionIndex(this.attributes);
+
+    if (idx == -1)
+    {
+      return this.withAttributes(SdpLists.append(SdpLists.removeIf(this.attributes, Media::isDirection), flag));
+    }
+
+    final Attribute previous = this.attributes.get(idx);
+
+    final Media next = this.withAttributes(SdpLists.set(this.attributes, idx, flag));
+
+    if (next == this)
+    {
+      return this;
+    }
+
+    if (this.serialized.isRendered())
+    {
+      next.serialized.derive(this.serialized, "a=" + previous, "a=" + flag);
+    }
+
+    return next;
+
+  }
+
+  /**
+   * the index of the only direction attribute, or -1 if there isn't exactly one.
+   */
+
+  static int directionIndex(final List<Attribute> attributes)
+  {
+    int idx = -1;
+    if (attributes != null)
+    {
+      for (int i = 0; i < attributes.size(); ++i)
+      {
+        if (isDirection(attributes.get(i)))
+        {
+          if (idx != -1)
+          {
+            return -1;
+          }
+          idx = i;
+        }
+      }
+    }
+    return idx;
   }
 
   /**
@@ -258,24 +570,26 @@ public class Media
         .type(this.type)
         .port(0)
         .protocol(this.protocol)
-        .formats((this.formats.isEmpty()) ? new ArrayList<>() : this.formats.subList(0, 1))
+        .formats((this.formats instanceof PayloadTypeList)
+            ? ((PayloadTypeList) this.formats).first()
+            : (this.formats.isEmpty()) ? new ArrayList<>() : this.formats.subList(0, 1))
         .attributes(Collections.emptyList())
         .build();
   }
 
   static boolean isDirection(final Attribute a)
   {
-    switch (a.getKey())
-    {
-      case "sendonly":
-      case "recvonly":
-      case "inactive":
-      case "sendrecv":
-        return true;
-      default:
-        return false;
+    return direction(a) != null;
+  }
 
-    }
+  /**
+   * the direction the attribute represents, or null if it isn't a direction attribute.
+   */
+
+  static SdpDirection direction(final Attribute a)
+  {
+    final SdpAttributeKey key = a.wellKnownKey();
+    return (key == null) ? null : key.direction();
   }
 
   public Media inverseDirection()
@@ -305,8 +619,7 @@ public class Media
 
   public Media withoutAttributes(final Predicate<Attribute> predicate)
   {
-    return this.withAttributes(this.attributes.stream().filter(a -> !predicate.test(a)).collect(
-        Collectors.toList()));
+    return this.withAttributes(SdpLists.removeIf(this.attributes, predicate));
   }
 
   /**
@@ -330,14 +643,9 @@ public class Media
   private boolean unused(final Attribute a)
   {
 
-    if (a.getKey().equals("rtpmap") || a.getKey().equals("fmtp"))
-    {
-      final int idx = a.getValue().indexOf(' ');
-      final int fmt = Integer.parseInt(a.getValue().substring(0, idx));
-      return !this.formats.contains(fmt);
-    }
+    final int fmt = payloadType(a);
 
-    return false;
+    return fmt != -1 && !this.hasPayloadType(fmt);
   }
 
   public Media withoutConnection()
@@ -351,18 +659,25 @@ public class Media
 
   public Optional<String> attribute(String name)
   {
-    return attributes.stream()
-        .filter(a -> a.getKey().equals(name))
-        .findFirst()
-        .map(e -> e.getValue() == null ? "" : e.getValue());
+    final int idx = this.index().first(name);
+    return (idx == -1) ? Optional.empty() : Optional.of(valueOf(this.attributes.get(idx)));
   }
 
   public List<String> attributes(String name)
   {
-    return attributes.stream()
-        .filter(a -> a.getKey().equals(name))
-        .map(e -> e.getValue() == null ? "" : e.getValue())
-        .collect(Collectors.toList());
+    final int[] positions = this.index().all(name);
+    final List<String> values = new ArrayList<>(positions.length);
+    for (final int idx : positions)
+    {
+      values.add(valueOf(this.attributes.get(idx)));
+    }
+    return values;
+  }
+
+  // the value of an attribute, with flags as "".
+  static String valueOf(final Attribute a)
+  {
+    return (a.getValue() == null) ? "" : a.getValue();
   }
 
   public Optional<Connection> connection()
@@ -393,16 +708,7 @@ public class Media
 
   public String mline()
   {
-    final StringBuilder sb = new StringBuilder();
-
-    sb.append("m=").append(this.type).append(" ").append(this.port).append(" ").append(
-        this.protocol).append(" ");
-
-    if (this.formats != null)
-    {
-      sb.append(formats.stream().collect(Collectors.joining(" ")));
-    }
-    return sb.toString();
+    return initialLine(this);
   }
 
   public Media replaceAttribute(String key, String value)
@@ -412,30 +718,50 @@ public class Media
 
   public Optional<Integer> ptime()
   {
-    return attribute("ptime").map(p -> Integer.parseInt(p));
+    Optional<Integer> ptime = this.decoded.ptime;
+    if (ptime == null)
+    {
+      ptime = attribute("ptime").map(p -> Integer.parseInt(p));
+      this.decoded.ptime = ptime;
+    }
+    return ptime;
   }
 
   public Optional<Integer> maxptime()
   {
-    return attribute("maxptime").map(p -> Integer.parseInt(p));
+    Optional<Integer> maxptime = this.decoded.maxptime;
+    if (maxptime == null)
+    {
+      maxptime = attribute("maxptime").map(p -> Integer.parseInt(p));
+      this.decoded.maxptime = maxptime;
+    }
+    return maxptime;
   }
 
   public Optional<SdpCryptoConfig> crypto()
   {
 
-    List<SdpCryptoConfig.Entry> entries = new ArrayList<>();
+    Optional<SdpCryptoConfig> crypto = this.decoded.crypto;
 
-    for (String line : attributes("crypto"))
+    if (crypto == null)
     {
-      entries.add(SdpCryptoConfig.parse(line));
-    }
 
-    if (entries.isEmpty())
-    {
-      return Optional.empty();
+      List<SdpCryptoConfig.Entry> entries = new ArrayList<>();
+
+      for (String line : attributes("crypto"))
+      {
+        entries.add(SdpCryptoConfig.parse(line));
+      }
+
+      crypto = entries.isEmpty()
+          ? Optional.empty()
+          : Optional.of(new SdpCryptoConfig(Collections.unmodifiableList(entries)));
+
+      this.decoded.crypto = crypto;
+
     }
 
-    return Optional.of(new SdpCryptoConfig(entries));
+    return crypto;
 
   }
 
@@ -457,14 +783,14 @@ public class Media
       return this;
     }
 
-    List<Attribute> attrs = new ArrayList<>(attributes());
+    List<Attribute> attrs = new ArrayList<>(crypto.entries().size());
 
     for (Entry e : crypto.entries())
     {
       attrs.add(new Attribute("crypto", e.toString()));
     }
 
-    return this.withAttributes(attrs);
+    return this.withAttributes(SdpLists.appendAll(this.attributes, attrs));
 
   }
 
@@ -472,9 +798,7 @@ public class Media
 
   public Media withExtraAttributes(List<Attribute> attrs)
   {
-    List<Attribute> attributes = new ArrayList<>(attributes());
-    attributes.addAll(attrs);
-    return withAttributes(attributes);
+    return withAttributes(SdpLists.appendAll(this.attributes, attrs));
   }
 
   public Media withoutAttributes(String... keys)
@@ -489,7 +813,7 @@ public class Media
         .type("audio")
         .protocol("RTP/AVP")
         .port(port)
-        .formats(Arrays.stream(formats).mapToObj(String::valueOf).collect(Collectors.toList()));
+        .formats(PayloadTypeList.of(formats));
   }
 
 }
@@ -0,0 +1,247 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.jive.oss.sdp.Media.MediaBuilder;
+import com.jive.oss.sdp.SessionDescription.SessionDescriptionBuilder;
+
+/**
+ * The {@link SdpHandler} behind {@link SdpParser#read()}, which builds a {@link SessionDescription} from the parser's events.
+ * 
+ */
+
+final class ModelBuilder implements SdpHandler
+{
+
+  private final SessionDescriptionBuilder b = SessionDescription.builder();
+  private final List<Attribute> attributes = new ArrayList<>();
+  private final List<Media> medias = new ArrayList<>();
+
+  private final SdpTokenizer fields = new SdpTokenizer();
+
+  // the media section currently being read, if any.
+  private MediaBuilder media;
+  private List<Attribute> mediaAttributes;
+
+  // where the text being parsed comes from, if the model should keep a reference to it (see SerializedForm).
+  private final SdpParser source;
+  private final int start;
+  private int mediaStart;
+
+  // where values are interned, if anywhere.
+  private final SdpInternPool pool;
+
+  /**
+   * a builder which records the span of the parser's text each section was read from.
+   */
+
+  ModelBuilder(final SdpParser source)
+  {
+    this(source, null);
+  }
+
+  /**
+   * as above, interning the values it creates through the pool, if given.
+   */
+
+  ModelBuilder(final SdpParser source, final SdpInternPool pool)
+  {
+    this.source = source;
+    this.start = (source == null) ? 0 : source.position();
+    this.pool = pool;
+  }
+
+  private <T> T intern(final T value)
+  {
+    return (this.pool == null) ? value : this.pool.intern(value);
+  }
+
+  @Override
+  public void onOrigin(
+      final CharSequence username,
+      final long sessionId,
+      final long version,
+      final CharSequence networkType,
+      final CharSequence addressType,
+      final CharSequence address)
+  {
+    this.b.origin(this.intern(new Origin(
+        username.toString(),
+        sessionId,
+        version,
+        networkType.toString(),
+        addressType.toString(),
+        address.toString())));
+  }
+
+  @Override
+  public void onSessionName(final CharSequence name)
+  {
+    this.b.subject(name.toString());
+  }
+
+  @Override
+  public void onConnection(final CharSequence networkType, final CharSequence addressType, final CharSequence address)
+  {
+
+    final Connection c = this.intern(Connection.builder()
+        .networkType(networkType.toString())
+        .addressType(addressType.toString())
+        .address(address.toString())
+        .build());
+
+    if (this.media != null)
+    {
+      this.media.connection(c);
+    }
+    else
+    {
+      this.b.connection(c);
+    }
+
+  }
+
+  @Override
+  public void onAttribute(final CharSequence key, final CharSequence value)
+  {
+
+    final Attribute a = this.intern(Attribute.of(key, value));
+
+    if (this.media != null)
+    {
+      this.mediaAttributes.add(a);
+    }
+    else
+    {
+      this.attributes.add(a);
+    }
+
+  }
+
+  @Override
+  public void onMediaStart(
+      final CharSequence type,
+      final int port,
+      final int numberOfPorts,
+      final CharSequence protocol,
+      final CharSequence formats)
+  {
+
+    // RTP formats are kept as primitive payload types, anything else (e.g, udptl, TCP/MSRP) as strings.
+    List<String> fmts = Media.isRtp(protocol) ? PayloadTypeList.parse(formats) : null;
+
+    if (fmts == null)
+    {
+
+      fmts = new ArrayList<>();
+
+      final SdpTokenizer fields = this.fields.reset(formats, 0, formats.length());
+
+      while (fields.hasNext())
+      {
+        fmts.add(fields.next().value());
+      }
+
+    }
+
+    this.media = Media.builder()
+        .type(type.toString())
+        .port(port)
+        .numberOfPorts(numberOfPorts)
+        .protocol(protocol.toString())
+        .formats(SdpLists.adopt(fmts));
+
+    this.mediaAttributes = new ArrayList<>();
+
+    if (this.source != null)
+    {
+      this.mediaStart = this.source.position();
+    }
+
+  }
+
+  @Override
+  public void onMediaEnd()
+  {
+    final Media m = this.media.attributes(SdpLists.adopt(this.mediaAttributes)).build();
+    if (this.pool != null)
+    {
+      // pooled media are shared with other session descriptions, so they mustn't refer to (and keep hold of) this one's text.
+      this.medias.add(this.pool.intern(m));
+    }
+    else
+    {
+      if (this.source != null)
+      {
+        m.serialized().set(this.source.text(), this.mediaStart, this.source.position());
+      }
+      this.medias.add(m);
+    }
+    this.media = null;
+    this.mediaAttributes = null;
+  }
+
+  @Override
+  public void onLine(final char type, final CharSequence value)
+  {
+
+    // anything we don't model (i=, b=, t=, etc) is kept as is, so it can be written back out.
+    final String line = new StringBuilder(value.length() + 2).append(type).append('=').append(value).toString();
+
+    if (this.media != null)
+    {
+      this.media.unknown(line);
+    }
+    else
+    {
+      this.b.unknown(line);
+    }
+
+  }
+
+  /**
+   * the last media section that was completed.
+   */
+
+  Media media()
+  {
+    return this.medias.get(this.medias.size() - 1);
+  }
+
+  SessionDescription build()
+  {
+    return this.build(this.medias);
+  }
+
+  SessionDescription build(final List<Media> medias)
+  {
+    final SessionDescription sd = this.b.attributes(SdpLists.adopt(this.attributes)).medias(SdpLists.adopt(medias)).build();
+    if (this.source != null)
+    {
+      sd.serialized().set(this.source.text(), this.start, this.source.position());
+    }
+    return sd;
+  }
+
+}
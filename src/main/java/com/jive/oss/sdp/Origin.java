@@ -100,6 +100,16 @@ public class Origin
 
   }
 
+  SdpWriter writeTo(final SdpWriter w)
+  {
+    return w.text(this.username).write(' ')
+        .slot(SdpTemplate.Slot.SESSION_ID, this.sessionId).write(' ')
+        .slot(SdpTemplate.Slot.VERSION, this.version).write(' ')
+        .text(this.networkType).write(' ')
+        .text(this.addressType).write(' ')
+        .slot(SdpTemplate.Slot.ADDRESS, this.address);
+  }
+
   public static Origin create(final String username, final InetAddress local)
   {
     return new Origin(
@@ -0,0 +1,49 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Value;
+
+/**
+ * The session id and version from an o= line, as returned by {@link SessionDescription#peekOrigin(CharSequence)}.
+ * 
+ * Per RFC 3264, an offer or answer with the same session id and version as the previous one describes the same session, so there is no
+ * need to parse it again.
+ * 
+ */
+
+@Value
+public class OriginVersion
+{
+
+  private long sessionId;
+  private long version;
+
+  /**
+   * true if the given origin has the same session id and version.
+   */
+
+  public boolean matches(final Origin origin)
+  {
+    return origin != null && origin.sessionId() == this.sessionId && origin.version() == this.version;
+  }
+
+}
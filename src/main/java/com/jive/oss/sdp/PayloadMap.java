@@ -20,8 +20,10 @@ package com.jive.oss.sdp;
  * #L%
  */
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -56,15 +58,27 @@ public class PayloadMap
   }
 
   public PayloadMap(final List<String> f, final List<Attribute> a)
+  {
+    this(
+        f.stream().map(e -> Integer.parseInt(e)).collect(Collectors.toList()),
+        rtpmaps(a),
+        fmtps(a));
+  }
+
+  /**
+   * builds the map from rtpmap and fmtp values which have already been decoded, keyed by payload type.
+   */
+
+  PayloadMap(final List<Integer> formats, final Map<Integer, RtpMapEntry> rtpmaps, final Map<Integer, String> fmtps)
   {
 
-    this.formats = f.stream().map(e -> Integer.parseInt(e)).collect(Collectors.toList());
+    this.formats = new ArrayList<>(formats);
 
     for (final int pt : this.formats)
     {
-      final RtpMapEntry id = getNameForId(a, pt);
-      final String fmtps = getFormatParams(a, pt);
-      final PayloadMapEntry e = new PayloadMapEntry(id, fmtps);
+      final RtpMapEntry id = rtpmaps.getOrDefault(pt, DEFAULT_PAYLOAD_MAP_TYPES.get(pt));
+      final String fmtp = fmtps.get(pt);
+      final PayloadMapEntry e = new PayloadMapEntry(id, fmtp);
       this.byId.put(pt, e);
 
       if (e.getEntry() != null)
@@ -83,54 +97,78 @@ public class PayloadMap
     return this.byId.get(this.formats.get(0));
   }
 
-  private static String getFormatParams(final List<Attribute> attributes, final int pt)
+  /**
+   * decodes each rtpmap attribute once, keyed by payload type. The first one for a payload type wins.
+   */
+
+  static Map<Integer, RtpMapEntry> rtpmaps(final List<Attribute> attributes)
   {
 
-    final String key = Integer.toString(pt) + " ";
+    final Map<Integer, RtpMapEntry> rtpmaps = new LinkedHashMap<>();
 
     for (final Attribute a : attributes)
     {
-      if (!a.getKey().equals("fmtp"))
+      if (a.is(SdpAttributeKey.RTPMAP))
       {
-        continue;
+        final RtpMapEntry e = RtpMapEntry.parse(a.getValue());
+        rtpmaps.putIfAbsent(e.getId(), e);
       }
-
-      if (!a.getValue().startsWith(key))
-      {
-        continue;
-      }
-
-      return a.getValue().substring(key.length()).trim();
-
     }
 
-    return null;
+    return rtpmaps;
+
   }
 
-  private static RtpMapEntry getNameForId(final List<Attribute> attributes, final int pt)
+  /**
+   * the parameters of each fmtp attribute, keyed by payload type. The first one for a payload type wins.
+   */
+
+  static Map<Integer, String> fmtps(final List<Attribute> attributes)
   {
 
+    final Map<Integer, String> fmtps = new HashMap<>();
+
     for (final Attribute a : attributes)
     {
 
-      if (!a.getKey().equals("rtpmap"))
+      if (!a.is(SdpAttributeKey.FMTP) || a.getValue() == null)
       {
         continue;
       }
 
-      final RtpMapEntry e = RtpMapEntry.parse(a.getValue());
+      final String value = a.getValue();
+      final int idx = value.indexOf(' ');
 
-      if (e.getId() == pt)
+      if (idx < 1 || !isNumber(value, idx))
       {
-        return e;
+        continue;
       }
 
+      fmtps.putIfAbsent(Integer.parseInt(value.substring(0, idx)), value.substring(idx + 1).trim());
+
     }
 
-    return DEFAULT_PAYLOAD_MAP_TYPES.get(pt);
+    return fmtps;
 
   }
 
+  private static boolean isNumber(final String value, final int end)
+  {
+    // a payload type is at most 3 digits, so this can't overflow.
+    if (end > 3)
+    {
+      return false;
+    }
+    for (int i = 0; i < end; ++i)
+    {
+      if (value.charAt(i) < '0' || value.charAt(i) > '9')
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public static RtpMapEntry lookupStatic(final int k)
   {
     return DEFAULT_PAYLOAD_MAP_TYPES.get(k);
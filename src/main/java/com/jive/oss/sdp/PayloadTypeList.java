@@ -0,0 +1,242 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * The formats of an RTP media line, stored as a primitive array of payload types.
+ * 
+ * It is still a (read-only) List of strings so it can sit behind {@link Media#formats()}, and compares equal to any other list with the
+ * same formats. The strings come from a shared table, so reading them doesn't allocate.
+ * 
+ */
+
+final class PayloadTypeList extends AbstractList<String> implements RandomAccess
+{
+
+  private static final int MAX_PAYLOAD_TYPE = 127;
+
+  private static final String[] NAMES = new String[MAX_PAYLOAD_TYPE + 1];
+
+  static
+  {
+    for (int i = 0; i < NAMES.length; ++i)
+    {
+      NAMES[i] = Integer.toString(i);
+    }
+  }
+
+  private final int[] types;
+
+  private PayloadTypeList(final int[] types)
+  {
+    this.types = types;
+  }
+
+  /**
+   * creates a list from the given payload types, which must all be in the range 0-127.
+   */
+
+  static PayloadTypeList of(final int... types)
+  {
+    for (final int type : types)
+    {
+      if (!isPayloadType(type))
+      {
+        throw new IllegalArgumentException("invalid payload type: " + type);
+      }
+    }
+    return new PayloadTypeList(types.clone());
+  }
+
+  /**
+   * parses the space separated formats, returning null if any of them isn't a payload type.
+   */
+
+  static PayloadTypeList parse(final CharSequence formats)
+  {
+
+    int[] types = new int[8];
+    int count = 0;
+
+    final int end = formats.length();
+
+    int pos = SdpUtils.skipWhitespace(formats, 0, end);
+
+    while (pos < end)
+    {
+
+      final int next = SdpUtils.nextWhitespace(formats, pos, end);
+
+      final int type = parseType(formats, pos, next);
+
+      if (type == -1)
+      {
+        return null;
+      }
+
+      if (count == types.length)
+      {
+        types = Arrays.copyOf(types, count * 2);
+      }
+
+      types[count++] = type;
+
+      pos = SdpUtils.skipWhitespace(formats, next, end);
+
+    }
+
+    return new PayloadTypeList(Arrays.copyOf(types, count));
+
+  }
+
+  /**
+   * converts a list of formats, returning null if any of them isn't a payload type.
+   */
+
+  static PayloadTypeList from(final List<String> formats)
+  {
+
+    if (formats instanceof PayloadTypeList)
+    {
+      return (PayloadTypeList) formats;
+    }
+
+    final int[] types = new int[formats.size()];
+
+    for (int i = 0; i < types.length; ++i)
+    {
+
+      final String format = formats.get(i);
+      final int type = parseType(format, 0, format.length());
+
+      if (type == -1)
+      {
+        return null;
+      }
+
+      types[i] = type;
+
+    }
+
+    return new PayloadTypeList(types);
+
+  }
+
+  /**
+   * the payload type in [start, end), or -1 if it isn't one in its canonical form.
+   */
+
+  static int parseType(final CharSequence text, final int start, final int end)
+  {
+
+    if (start == end || end - start > 3)
+    {
+      return -1;
+    }
+
+    // a leading zero (e.g "08") wouldn't be written back out as it was, so the formats are kept as strings.
+    if (end - start > 1 && text.charAt(start) == '0')
+    {
+      return -1;
+    }
+
+    int type = 0;
+
+    for (int i = start; i < end; ++i)
+    {
+      final int digit = text.charAt(i) - '0';
+      if (digit < 0 || digit > 9)
+      {
+        return -1;
+      }
+      type = (type * 10) + digit;
+    }
+
+    return isPayloadType(type) ? type : -1;
+
+  }
+
+  private static boolean isPayloadType(final int type)
+  {
+    return type >= 0 && type <= MAX_PAYLOAD_TYPE;
+  }
+
+  @Override
+  public String get(final int index)
+  {
+    return NAMES[this.types[index]];
+  }
+
+  @Override
+  public int size()
+  {
+    return this.types.length;
+  }
+
+  /**
+   * the shared string form of the given payload type.
+   */
+
+  static String name(final int type)
+  {
+    return isPayloadType(type) ? NAMES[type] : Integer.toString(type);
+  }
+
+  int getInt(final int index)
+  {
+    return this.types[index];
+  }
+
+  boolean containsInt(final int type)
+  {
+    for (final int t : this.types)
+    {
+      if (t == type)
+      {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  IntStream intStream()
+  {
+    return Arrays.stream(this.types);
+  }
+
+  PayloadTypeList filter(final IntPredicate filter)
+  {
+    return new PayloadTypeList(Arrays.stream(this.types).filter(filter).toArray());
+  }
+
+  PayloadTypeList first()
+  {
+    return new PayloadTypeList(Arrays.copyOf(this.types, Math.min(1, this.types.length)));
+  }
+
+}
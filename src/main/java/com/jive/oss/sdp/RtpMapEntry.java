@@ -20,9 +20,6 @@ package com.jive.oss.sdp;
  * #L%
  */
 
-import java.util.Arrays;
-import java.util.List;
-
 import lombok.Value;
 
 @Value
@@ -34,16 +31,54 @@ public class RtpMapEntry
   private Integer rate;
   private Integer channels;
 
+  /**
+   * parses the value of an rtpmap attribute, e.g "0 PCMU/8000" or "111 opus/48000/2".
+   * 
+   * @throws SdpParseException
+   *           if the value is malformed.
+   */
+
   public static RtpMapEntry parse(final String value)
   {
-    int idx = value.indexOf(' ');
-    int id = Integer.parseInt(value.substring(0, idx));
-    List<String> items = Arrays.asList(value.substring(idx + 1).split("/"));
+
+    final int end = value.length();
+    final int idx = SdpUtils.indexOf(value, ' ', 0, end);
+
+    if (idx == -1)
+    {
+      throw invalid(value);
+    }
+
+    final int id = number(value, 0, idx);
+
+    final int start = SdpUtils.skipWhitespace(value, idx, end);
+    final int rate = SdpUtils.indexOf(value, '/', start, end);
+    final int channels = (rate == -1) ? -1 : SdpUtils.indexOf(value, '/', rate + 1, end);
+
+    // anything after a further '/' is ignored.
+    final int extra = (channels == -1) ? -1 : SdpUtils.indexOf(value, '/', channels + 1, end);
+
     return new RtpMapEntry(
         id,
-        items.get(0),
-        items.size() > 1 ? Integer.parseInt(items.get(1)) : null,
-        items.size() > 2 ? Integer.parseInt(items.get(2)) : null);
+        value.substring(start, (rate == -1) ? end : rate),
+        (rate == -1) ? null : number(value, rate + 1, (channels == -1) ? end : channels),
+        (channels == -1) ? null : number(value, channels + 1, (extra == -1) ? end : extra));
+
+  }
+
+  private static int number(final String value, final int start, final int end)
+  {
+    final long result = SdpUtils.parseUnsigned(value, start, end);
+    if (result == -1 || result > Integer.MAX_VALUE)
+    {
+      throw invalid(value);
+    }
+    return (int) result;
+  }
+
+  private static SdpParseException invalid(final String value)
+  {
+    return SdpParseException.of(SdpParseError.INVALID_ATTRIBUTE, "invalid rtpmap: " + value);
   }
 
   @Override
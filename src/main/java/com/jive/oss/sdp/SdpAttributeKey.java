@@ -0,0 +1,215 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * The attribute keys that make up most SDP traffic.
+ * 
+ * Parsing maps these keys onto the shared constant key strings (and, for property attributes such as "sendrecv", a shared
+ * {@link Attribute} instance), and records the constant on the {@link Attribute}, so lookups can compare by identity or switch on it
+ * rather than comparing strings.
+ * 
+ */
+
+public enum SdpAttributeKey
+{
+
+  RTPMAP("rtpmap"),
+  FMTP("fmtp"),
+  PTIME("ptime"),
+  MAXPTIME("maxptime"),
+  SENDRECV("sendrecv"),
+  SENDONLY("sendonly"),
+  RECVONLY("recvonly"),
+  INACTIVE("inactive"),
+  CRYPTO("crypto"),
+  CANDIDATE("candidate"),
+  END_OF_CANDIDATES("end-of-candidates"),
+  ICE_UFRAG("ice-ufrag"),
+  ICE_PWD("ice-pwd"),
+  ICE_OPTIONS("ice-options"),
+  FINGERPRINT("fingerprint"),
+  SETUP("setup"),
+  MID("mid"),
+  GROUP("group"),
+  RTCP("rtcp"),
+  RTCP_MUX("rtcp-mux"),
+  RTCP_RSIZE("rtcp-rsize"),
+  RTCP_FB("rtcp-fb"),
+  EXTMAP("extmap"),
+  SSRC("ssrc"),
+  SSRC_GROUP("ssrc-group"),
+  MSID("msid"),
+  MSID_SEMANTIC("msid-semantic"),
+  SCTP_PORT("sctp-port"),
+  MAX_MESSAGE_SIZE("max-message-size"),
+  SILENCE_SUPP("silenceSupp");
+
+  // open addressed, keyed on String#hashCode() so it can be probed from any CharSequence.
+  private static final SdpAttributeKey[] TABLE = new SdpAttributeKey[128];
+
+  static
+  {
+    for (final SdpAttributeKey k : values())
+    {
+      int slot = k.key.hashCode() & (TABLE.length - 1);
+      while (TABLE[slot] != null)
+      {
+        slot = (slot + 1) & (TABLE.length - 1);
+      }
+      TABLE[slot] = k;
+    }
+  }
+
+  private final String key;
+  private final Attribute flag;
+
+  private SdpAttributeKey(final String key)
+  {
+    this.key = key;
+    this.flag = new Attribute(key, null, this);
+  }
+
+  /**
+   * the attribute key, as it appears in the SDP.
+   */
+
+  public String key()
+  {
+    return this.key;
+  }
+
+  /**
+   * a small integer identifying the key, suitable for indexing arrays.
+   */
+
+  public int id()
+  {
+    return this.ordinal();
+  }
+
+  /**
+   * the shared instance of this key as a property attribute, i.e without a value (e.g "a=sendrecv").
+   */
+
+  public Attribute flag()
+  {
+    return this.flag;
+  }
+
+  /**
+   * returns the well known key matching the given one, or null if it isn't one of them.
+   */
+
+  public static SdpAttributeKey lookup(final CharSequence key)
+  {
+    return lookup(key, 0, key.length());
+  }
+
+  /**
+   * as {@link #lookup(CharSequence)}, for the key in [start, end) of the given text. Nothing is allocated.
+   */
+
+  public static SdpAttributeKey lookup(final CharSequence text, final int start, final int end)
+  {
+
+    int hash = 0;
+
+    for (int i = start; i < end; ++i)
+    {
+      hash = (31 * hash) + text.charAt(i);
+    }
+
+    int slot = hash & (TABLE.length - 1);
+
+    SdpAttributeKey k;
+
+    while ((k = TABLE[slot]) != null)
+    {
+      if (k.matches(text, start, end))
+      {
+        return k;
+      }
+      slot = (slot + 1) & (TABLE.length - 1);
+    }
+
+    return null;
+
+  }
+
+  private boolean matches(final CharSequence text, final int start, final int end)
+  {
+    if (end - start != this.key.length())
+    {
+      return false;
+    }
+    for (int i = start; i < end; ++i)
+    {
+      if (text.charAt(i) != this.key.charAt(i - start))
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * the key for the given direction.
+   */
+
+  public static SdpAttributeKey of(final SdpDirection direction)
+  {
+    switch (direction)
+    {
+      case SendRecv:
+        return SENDRECV;
+      case SendOnly:
+        return SENDONLY;
+      case RecvOnly:
+        return RECVONLY;
+      case Inactive:
+        return INACTIVE;
+    }
+    throw new RuntimeException("Invalid SdpDirection value");
+  }
+
+  /**
+   * the direction this key represents, or null if it isn't a direction attribute.
+   */
+
+  SdpDirection direction()
+  {
+    switch (this)
+    {
+      case SENDRECV:
+        return SdpDirection.SendRecv;
+      case SENDONLY:
+        return SdpDirection.SendOnly;
+      case RECVONLY:
+        return SdpDirection.RecvOnly;
+      case INACTIVE:
+        return SdpDirection.Inactive;
+      default:
+        return null;
+    }
+  }
+
+}
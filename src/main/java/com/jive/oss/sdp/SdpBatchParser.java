@@ -0,0 +1,149 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Parses large collections of SDP bodies across cores using fork/join.
+ * 
+ * Results are returned in input order, and an SDP that fails to parse is reported in its {@link SdpParseResult} rather than aborting the
+ * batch.
+ * 
+ * Parsing shares no mutable state: each body gets its own reader and parser, and each task only writes its own slots of the result array.
+ * Throughput therefore scales with the number of cores in the pool.
+ * 
+ */
+
+public final class SdpBatchParser
+{
+
+  // below this many bodies a task parses sequentially rather than splitting further.
+  private static final int THRESHOLD = 32;
+
+  private SdpBatchParser()
+  {
+  }
+
+  /**
+   * parses the bodies in the common fork/join pool.
+   */
+
+  public static List<SdpParseResult> parse(final List<byte[]> bodies)
+  {
+    return parse(bodies, ForkJoinPool.commonPool());
+  }
+
+  public static List<SdpParseResult> parse(final List<byte[]> bodies, final ForkJoinPool pool)
+  {
+    return parse(bodies, SessionDescription::parse, pool);
+  }
+
+  /**
+   * parses bodies of any type, using the given function to parse each one.
+   */
+
+  public static <T> List<SdpParseResult> parse(
+      final List<T> bodies,
+      final Function<? super T, SessionDescription> parser,
+      final ForkJoinPool pool)
+  {
+    final SdpParseResult[] results = new SdpParseResult[bodies.size()];
+    pool.invoke(new ParseTask<>(bodies, parser, results, 0, results.length));
+    return Arrays.asList(results);
+  }
+
+  /**
+   * parses a stream of bodies in parallel, keeping the stream's encounter order. The stream is lazy: nothing is parsed until a terminal
+   * operation is invoked on the result.
+   */
+
+  public static Stream<SdpParseResult> parse(final Stream<byte[]> bodies)
+  {
+    return bodies.parallel().map(body -> parse(body, SessionDescription::parse));
+  }
+
+  private static <T> SdpParseResult parse(final T body, final Function<? super T, SessionDescription> parser)
+  {
+    try
+    {
+      return SdpParseResult.success(parser.apply(body));
+    }
+    catch (final RuntimeException ex)
+    {
+      return SdpParseResult.failure(ex);
+    }
+  }
+
+  private static final class ParseTask<T> extends RecursiveAction
+  {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<T> bodies;
+    private final Function<? super T, SessionDescription> parser;
+    private final SdpParseResult[] results;
+    private final int from;
+    private final int to;
+
+    ParseTask(
+        final List<T> bodies,
+        final Function<? super T, SessionDescription> parser,
+        final SdpParseResult[] results,
+        final int from,
+        final int to)
+    {
+      this.bodies = bodies;
+      this.parser = parser;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute()
+    {
+
+      if (this.to - this.from <= THRESHOLD)
+      {
+        for (int i = this.from; i < this.to; ++i)
+        {
+          this.results[i] = parse(this.bodies.get(i), this.parser);
+        }
+        return;
+      }
+
+      final int mid = (this.from + this.to) >>> 1;
+
+      invokeAll(
+          new ParseTask<>(this.bodies, this.parser, this.results, this.from, mid),
+          new ParseTask<>(this.bodies, this.parser, this.results, mid, this.to));
+
+    }
+
+  }
+
+}
@@ -0,0 +1,369 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads SDP bodies stored back to back in a (possibly multi-gigabyte) file, such as a trace archive.
+ * 
+ * The file is memory mapped a window at a time, and body boundaries are found in place. Each body is handed out as a read-only
+ * {@link ByteBuffer} view of the mapping, and parsed with {@link SessionDescription#parse(ByteBuffer)} straight from the mapped bytes, so
+ * neither the file nor the bodies are copied onto the heap.
+ * 
+ * Two framings are supported: {@link #lengthPrefixed(Path)}, where each body follows a 4 byte big-endian length, and
+ * {@link #separated(Path, String)}, where bodies are delimited by a separator line.
+ * 
+ */
+
+public class SdpCorpusReader implements Closeable
+{
+
+  // how much of the file is mapped at once. a single body must fit in a window.
+  private static final long DEFAULT_WINDOW = 256 * 1024 * 1024;
+
+  private final FileChannel channel;
+  private final long size;
+  private final long window;
+
+  // null for length prefixed framing.
+  private final byte[] separator;
+
+  private SdpCorpusReader(final Path path, final byte[] separator, final long window) throws IOException
+  {
+    if (window < 1 || window > Integer.MAX_VALUE)
+    {
+      throw new IllegalArgumentException("invalid window size");
+    }
+    this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    this.size = this.channel.size();
+    this.separator = separator;
+    this.window = window;
+  }
+
+  /**
+   * opens a file where each body is preceded by its length, as a 4 byte big-endian integer.
+   */
+
+  public static SdpCorpusReader lengthPrefixed(final Path path) throws IOException
+  {
+    return new SdpCorpusReader(path, null, DEFAULT_WINDOW);
+  }
+
+  /**
+   * opens a file where bodies are separated by lines consisting of just the given separator (e.g "--"). The separator before the first
+   * body and after the last are optional.
+   */
+
+  public static SdpCorpusReader separated(final Path path, final String separator) throws IOException
+  {
+    return new SdpCorpusReader(path, separator.getBytes(StandardCharsets.UTF_8), DEFAULT_WINDOW);
+  }
+
+  /**
+   * as {@link #lengthPrefixed(Path)} or {@link #separated(Path, String)} (if separator is non null), mapping at most the given number of
+   * bytes at a time.
+   */
+
+  public static SdpCorpusReader open(final Path path, final String separator, final long window) throws IOException
+  {
+    return new SdpCorpusReader(path, (separator == null) ? null : separator.getBytes(StandardCharsets.UTF_8), window);
+  }
+
+  /**
+   * a lazy, ordered stream of read-only views of each body. The views remain valid after this reader is closed.
+   */
+
+  public Stream<ByteBuffer> bodies()
+  {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(new BodyIterator(), Spliterator.ORDERED | Spliterator.NONNULL),
+        false);
+  }
+
+  /**
+   * a lazy, ordered stream of each body, parsed as it is consumed.
+   */
+
+  public Stream<SessionDescription> stream()
+  {
+    return this.bodies().map(SessionDescription::parse);
+  }
+
+  /**
+   * as {@link #stream()}, but parsing in parallel. Boundaries are still found sequentially, which is cheap next to the parse itself.
+   */
+
+  public Stream<SessionDescription> parallelStream()
+  {
+    return this.bodies().parallel().map(SessionDescription::parse);
+  }
+
+  @Override
+  public void close() throws IOException
+  {
+    this.channel.close();
+  }
+
+  private final class BodyIterator implements Iterator<ByteBuffer>
+  {
+
+    private MappedByteBuffer mapped;
+
+    // file offset of the start of the mapped window.
+    private long base;
+
+    // offset of the next body (or its framing) in the window.
+    private int pos;
+
+    private ByteBuffer next;
+
+    @Override
+    public boolean hasNext()
+    {
+      if (this.next == null)
+      {
+        try
+        {
+          this.next = (SdpCorpusReader.this.separator == null) ? this.nextPrefixed() : this.nextSeparated();
+        }
+        catch (final IOException ex)
+        {
+          throw new UncheckedIOException(ex);
+        }
+      }
+      return this.next != null;
+    }
+
+    @Override
+    public ByteBuffer next()
+    {
+      if (!this.hasNext())
+      {
+        throw new NoSuchElementException();
+      }
+      final ByteBuffer body = this.next;
+      this.next = null;
+      return body;
+    }
+
+    private ByteBuffer nextPrefixed() throws IOException
+    {
+
+      final long remaining = SdpCorpusReader.this.size - (this.base + this.pos);
+
+      if (remaining == 0)
+      {
+        return null;
+      }
+
+      if (remaining < 4)
+      {
+        throw new IOException("truncated length prefix at offset " + (this.base + this.pos));
+      }
+
+      this.ensure(4);
+
+      final int length = this.mapped.getInt(this.pos);
+
+      if (length < 0 || length > remaining - 4)
+      {
+        throw new IOException("invalid body length " + length + " at offset " + (this.base + this.pos));
+      }
+
+      // checked before mapping, as a (corrupt) length near Integer.MAX_VALUE would overflow the window arithmetic.
+      if (length > SdpCorpusReader.this.window - 4)
+      {
+        throw new IOException("body at offset " + (this.base + this.pos) + " is larger than the mapping window");
+      }
+
+      this.ensure(4L + length);
+
+      final ByteBuffer body = this.view(this.pos + 4, length);
+
+      this.pos += 4 + length;
+
+      return body;
+
+    }
+
+    private ByteBuffer nextSeparated() throws IOException
+    {
+
+      while (true)
+      {
+
+        if (this.base + this.pos >= SdpCorpusReader.this.size)
+        {
+          return null;
+        }
+
+        this.ensure(0);
+
+        final int limit = this.mapped.limit();
+
+        int line = this.pos;
+
+        while (line < limit)
+        {
+
+          int eol = line;
+
+          while (eol < limit && this.mapped.get(eol) != '\n')
+          {
+            ++eol;
+          }
+
+          if (eol == limit && this.base + limit < SdpCorpusReader.this.size)
+          {
+            // the line continues past the window.
+            break;
+          }
+
+          if (this.isSeparator(line, eol))
+          {
+            final ByteBuffer body = this.view(this.pos, line - this.pos);
+            this.pos = Math.min(eol + 1, limit);
+            if (!this.isBlank(body))
+            {
+              return body;
+            }
+            line = this.pos;
+            continue;
+          }
+
+          line = eol + 1;
+
+        }
+
+        if (this.base + limit >= SdpCorpusReader.this.size)
+        {
+          // the last body, without a trailing separator.
+          final ByteBuffer body = this.view(this.pos, limit - this.pos);
+          this.pos = limit;
+          return this.isBlank(body) ? null : body;
+        }
+
+        if (this.pos == 0)
+        {
+          throw new IOException("body at offset " + this.base + " is larger than the mapping window");
+        }
+
+        // remap so the body in progress starts the window.
+        this.remap(this.base + this.pos);
+
+      }
+
+    }
+
+    private boolean isSeparator(final int start, int end)
+    {
+
+      if (end > start && this.mapped.get(end - 1) == '\r')
+      {
+        --end;
+      }
+
+      final byte[] separator = SdpCorpusReader.this.separator;
+
+      if (end - start != separator.length)
+      {
+        return false;
+      }
+
+      for (int i = 0; i < separator.length; ++i)
+      {
+        if (this.mapped.get(start + i) != separator[i])
+        {
+          return false;
+        }
+      }
+
+      return true;
+
+    }
+
+    private boolean isBlank(final ByteBuffer body)
+    {
+      for (int i = body.position(); i < body.limit(); ++i)
+      {
+        if ((body.get(i) & 0xFF) > ' ')
+        {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * makes sure the window holds at least length bytes from the current position, remapping if needed.
+     */
+
+    private void ensure(final long length) throws IOException
+    {
+
+      if (this.mapped != null && this.pos + length <= this.mapped.limit() && (length > 0 || this.pos < this.mapped.limit()))
+      {
+        return;
+      }
+
+      if (length > SdpCorpusReader.this.window)
+      {
+        throw new IOException("body at offset " + (this.base + this.pos) + " is larger than the mapping window");
+      }
+
+      this.remap(this.base + this.pos);
+
+    }
+
+    private void remap(final long offset) throws IOException
+    {
+      final long length = Math.min(SdpCorpusReader.this.size - offset, SdpCorpusReader.this.window);
+      this.mapped = SdpCorpusReader.this.channel.map(MapMode.READ_ONLY, offset, length);
+      this.base = offset;
+      this.pos = 0;
+    }
+
+    private ByteBuffer view(final int offset, final int length)
+    {
+      final ByteBuffer view = this.mapped.duplicate();
+      view.limit(offset + length).position(offset);
+      return view.slice();
+    }
+
+  }
+
+}
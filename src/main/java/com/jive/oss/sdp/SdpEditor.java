@@ -0,0 +1,556 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * A mutable editor over a {@link SessionDescription}, for applying a batch of changes with a single copy of the model rather than a copy
+ * per change, as chaining the withers does:
+ * 
+ * <pre>
+ * SessionDescription answer = offer.edit()
+ *     .connection(local)
+ *     .removeAttribute("group")
+ *     .newVersion()
+ *     .media(0, m -&gt; m.port(5004).direction(SdpDirection.SendOnly).filterPayloadTypes(pt -&gt; pt == 0 || pt == 101))
+ *     .freeze();
+ * </pre>
+ * 
+ * Lists are copied the first time they are changed, and media sections which aren't changed are shared with the original by the
+ * frozen model (as is the whole model, if nothing is changed at all).
+ * 
+ * Instances are not thread safe, and are single use: no changes can be made once {@link #freeze()} has been called.
+ * 
+ */
+
+public final class SdpEditor
+{
+
+  private final SessionDescription original;
+
+  private Origin origin;
+  private Connection connection;
+  private String subject;
+
+  // the lists are either the original's, or our own copies, which are handed over to the frozen model rather than copied again.
+  private List<Attribute> attributes;
+  private List<Media> medias;
+
+  // an editor for each media section that has been edited, by index.
+  private final List<MediaEditor> editors;
+
+  // true once any of the lists above are our own copies.
+  private boolean attributesCopied;
+  private boolean mediasCopied;
+
+  private boolean changed;
+  private boolean frozen;
+
+  SdpEditor(final SessionDescription original)
+  {
+    this.original = original;
+    this.origin = original.origin();
+    this.connection = original.connection();
+    this.subject = original.subject();
+    this.attributes = original.attributeList();
+    this.medias = original.mediaList();
+    this.editors = new ArrayList<>();
+  }
+
+  public SdpEditor origin(final Origin origin)
+  {
+    this.modify();
+    this.origin = origin;
+    return this;
+  }
+
+  /**
+   * increments the origin version, e.g for a re-offer.
+   */
+
+  public SdpEditor newVersion()
+  {
+    return this.origin(this.origin.withVersion(this.origin.version() + 1));
+  }
+
+  public SdpEditor connection(final Connection connection)
+  {
+    this.modify();
+    this.connection = connection;
+    return this;
+  }
+
+  public SdpEditor subject(final String subject)
+  {
+    this.modify();
+    this.subject = subject;
+    return this;
+  }
+
+  public SdpEditor addAttribute(final Attribute attr)
+  {
+    this.attributes().add(attr);
+    return this;
+  }
+
+  public SdpEditor addAttribute(final String key, final String value)
+  {
+    return this.addAttribute(new Attribute(key, value));
+  }
+
+  public SdpEditor removeAttribute(final String key)
+  {
+    return this.removeAttributes(a -> key.equals(a.getKey()));
+  }
+
+  public SdpEditor removeAttribute(final String key, final String value)
+  {
+    return this.removeAttributes(a -> key.equals(a.getKey()) && (value == null || value.equals(a.getValue())));
+  }
+
+  public SdpEditor removeAttributes(final Predicate<Attribute> predicate)
+  {
+    this.check();
+    if (this.attributes != null && this.attributes.stream().anyMatch(predicate))
+    {
+      this.attributes().removeIf(predicate);
+    }
+    return this;
+  }
+
+  /**
+   * sets the session level direction attribute, replacing an existing one in place.
+   */
+
+  public SdpEditor direction(final SdpDirection d)
+  {
+    this.check();
+    this.attributes = direction(this.attributes(), d);
+    return this;
+  }
+
+  public SdpEditor removeDirection()
+  {
+    return this.removeAttributes(Media::isDirection);
+  }
+
+  /**
+   * the number of media sections.
+   */
+
+  public int mediaCount()
+  {
+    return (this.medias == null) ? 0 : this.medias.size();
+  }
+
+  /**
+   * an editor for the media section at the given index. Changes made through it are included when this editor is frozen.
+   */
+
+  public MediaEditor media(final int index)
+  {
+
+    this.check();
+
+    if (this.medias == null)
+    {
+      throw new IndexOutOfBoundsException("Index: " + index);
+    }
+
+    final Media m = this.medias.get(index);
+
+    while (this.editors.size() <= index)
+    {
+      this.editors.add(null);
+    }
+
+    MediaEditor editor = this.editors.get(index);
+
+    if (editor == null)
+    {
+      editor = new MediaEditor(m);
+      this.editors.set(index, editor);
+    }
+
+    return editor;
+
+  }
+
+  /**
+   * applies the given changes to the media section at the given index.
+   */
+
+  public SdpEditor media(final int index, final Consumer<MediaEditor> changes)
+  {
+    changes.accept(this.media(index));
+    return this;
+  }
+
+  /**
+   * applies the given changes to each media section.
+   */
+
+  public SdpEditor medias(final Consumer<MediaEditor> changes)
+  {
+    for (int i = 0; i < this.mediaCount(); ++i)
+    {
+      changes.accept(this.media(i));
+    }
+    return this;
+  }
+
+  public SdpEditor addMedia(final Media media)
+  {
+    this.medias().add(media);
+    return this;
+  }
+
+  /**
+   * the edited {@link SessionDescription}. Returns the original instance if nothing was changed.
+   */
+
+  public SessionDescription freeze()
+  {
+
+    this.check();
+
+    for (int i = 0; i < this.editors.size(); ++i)
+    {
+      final MediaEditor editor = this.editors.get(i);
+      if (editor != null && editor.changed)
+      {
+        this.medias().set(i, editor.freeze());
+      }
+    }
+
+    this.frozen = true;
+
+    if (!this.changed)
+    {
+      return this.original;
+    }
+
+    return SessionDescription.builder()
+        .origin(this.origin)
+        .info(this.original.info())
+        .connection(this.connection)
+        .subject(this.subject)
+        .attributes(SdpLists.adopt(this.attributes))
+        .medias(SdpLists.adopt(this.medias))
+        .unknowns(this.original.unknowns())
+        .build();
+
+  }
+
+  private List<Attribute> attributes()
+  {
+    this.modify();
+    if (!this.attributesCopied)
+    {
+      this.attributes = copy(this.attributes);
+      this.attributesCopied = true;
+    }
+    return this.attributes;
+  }
+
+  private List<Media> medias()
+  {
+    this.modify();
+    if (!this.mediasCopied)
+    {
+      this.medias = copy(this.medias);
+      this.mediasCopied = true;
+    }
+    return this.medias;
+  }
+
+  private void modify()
+  {
+    this.check();
+    this.changed = true;
+  }
+
+  private void check()
+  {
+    if (this.frozen)
+    {
+      throw new IllegalStateException("already frozen");
+    }
+  }
+
+  private static <T> List<T> copy(final List<T> list)
+  {
+    return (list == null) ? new ArrayList<>() : new ArrayList<>(list);
+  }
+
+  /**
+   * sets the direction attribute in the (mutable) list, replacing a single existing one in place, or else removing any others and adding
+   * it at the end.
+   */
+
+  private static List<Attribute> direction(final List<Attribute> attributes, final SdpDirection d)
+  {
+
+    final Attribute flag = SdpAttributeKey.of(d).flag();
+    final int idx = Media.directionIndex(attributes);
+
+    if (idx == -1)
+    {
+      attributes.removeIf(Media::isDirection);
+      attributes.add(flag);
+    }
+    else
+    {
+      attributes.set(idx, flag);
+    }
+
+    return attributes;
+
+  }
+
+  /**
+   * A mutable editor over a single {@link Media}, obtained from {@link SdpEditor#media(int)}.
+   */
+
+  public final class MediaEditor
+  {
+
+    private final Media original;
+
+    private int port;
+    private int numberOfPorts;
+    private List<String> formats;
+    private Connection connection;
+    private List<Attribute> attributes;
+    private List<String> unknowns;
+
+    private boolean formatsCopied;
+    private boolean attributesCopied;
+
+    private boolean changed;
+
+    private MediaEditor(final Media original)
+    {
+      this.original = original;
+      this.port = original.port();
+      this.numberOfPorts = original.numberOfPorts();
+      this.formats = original.formatList();
+      this.connection = original.getConnection();
+      this.attributes = original.attributeList();
+      this.unknowns = original.unknowns();
+    }
+
+    public MediaEditor port(final int port)
+    {
+      this.modify();
+      this.port = port;
+      return this;
+    }
+
+    public MediaEditor connection(final Connection connection)
+    {
+      this.modify();
+      this.connection = connection;
+      return this;
+    }
+
+    public MediaEditor formats(final List<String> formats)
+    {
+      this.modify();
+      this.formats = formats;
+      this.formatsCopied = false;
+      return this;
+    }
+
+    public MediaEditor addFormat(final String format)
+    {
+      this.modify();
+      if (!this.formatsCopied)
+      {
+        this.formats = copy(this.formats);
+        this.formatsCopied = true;
+      }
+      this.formats.add(format);
+      return this;
+    }
+
+    /**
+     * keeps only the payload types that match the filter, along with their rtpmap and fmtp attributes.
+     *
+     * @throws IllegalStateException
+     *           if the formats are not RTP payload types.
+     */
+
+    public MediaEditor filterPayloadTypes(final IntPredicate filter)
+    {
+
+      SdpEditor.this.check();
+
+      final PayloadTypeList types = PayloadTypeList.from((this.formats == null) ? new ArrayList<>() : this.formats);
+
+      if (types == null)
+      {
+        throw new IllegalStateException("formats are not RTP payload types");
+      }
+
+      final PayloadTypeList filtered = types.filter(filter);
+
+      if (filtered.size() != types.size())
+      {
+        this.formats(filtered);
+      }
+
+      return this.removeAttributes(a -> {
+        final int pt = Media.payloadType(a);
+        return pt != -1 && !filter.test(pt);
+      });
+
+    }
+
+    public MediaEditor addAttribute(final Attribute attr)
+    {
+      this.attributes().add(attr);
+      return this;
+    }
+
+    public MediaEditor addAttribute(final String key, final String value)
+    {
+      return this.addAttribute(new Attribute(key, value));
+    }
+
+    public MediaEditor removeAttribute(final String key)
+    {
+      return this.removeAttributes(a -> key.equals(a.getKey()));
+    }
+
+    public MediaEditor removeAttributes(final Predicate<Attribute> predicate)
+    {
+      SdpEditor.this.check();
+      if (this.attributes != null && this.attributes.stream().anyMatch(predicate))
+      {
+        this.attributes().removeIf(predicate);
+      }
+      return this;
+    }
+
+    /**
+     * replaces any attributes with the given key with a single one with the given value, at the end.
+     */
+
+    public MediaEditor replaceAttribute(final String key, final String value)
+    {
+      return this.removeAttribute(key).addAttribute(key, value);
+    }
+
+    /**
+     * sets the direction attribute, replacing an existing one in place.
+     */
+
+    public MediaEditor direction(final SdpDirection d)
+    {
+      SdpEditor.this.check();
+      this.attributes = SdpEditor.direction(this.attributes(), d);
+      return this;
+    }
+
+    /**
+     * disables the media section, as {@link Media#disabled()}. Does nothing if it is already disabled.
+     */
+
+    public MediaEditor disable()
+    {
+
+      if (this.port == 0)
+      {
+        SdpEditor.this.check();
+        return this;
+      }
+
+      this.modify();
+
+      this.port = 0;
+      this.numberOfPorts = 0;
+      this.connection = null;
+      this.unknowns = null;
+
+      final List<String> formats = this.formats;
+      this.formats((formats instanceof PayloadTypeList)
+          ? ((PayloadTypeList) formats).first()
+          : (formats == null || formats.isEmpty()) ? new ArrayList<>() : new ArrayList<>(formats.subList(0, 1)));
+
+      this.attributes = new ArrayList<>();
+      this.attributesCopied = true;
+
+      return this;
+
+    }
+
+    private List<Attribute> attributes()
+    {
+      this.modify();
+      if (!this.attributesCopied)
+      {
+        this.attributes = copy(this.attributes);
+        this.attributesCopied = true;
+      }
+      return this.attributes;
+    }
+
+    private void modify()
+    {
+      SdpEditor.this.modify();
+      this.changed = true;
+    }
+
+    private Media freeze()
+    {
+
+      if (!this.changed)
+      {
+        return this.original;
+      }
+
+      final Media.MediaBuilder b = Media.builder()
+          .type(this.original.type())
+          .port(this.port)
+          .numberOfPorts(this.numberOfPorts)
+          .protocol(this.original.protocol())
+          .formats(this.formatsCopied ? SdpLists.adopt(this.formats) : this.formats)
+          .connection(this.connection)
+          .attributes(SdpLists.adopt(this.attributes));
+
+      if (this.unknowns != null)
+      {
+        b.unknowns(this.unknowns);
+      }
+
+      return b.build();
+
+    }
+
+  }
+
+}
@@ -0,0 +1,114 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Receives events from {@link SdpParser#parse(SdpHandler)} as it walks an SDP body, without a {@link SessionDescription} being built.
+ * 
+ * Textual arguments are views onto the text being parsed, and are reused between callbacks. They are only valid for the duration of the
+ * call, so use {@link CharSequence#toString()} on anything that needs to be kept.
+ * 
+ * All methods do nothing by default, so implementations only need to override the events they care about.
+ * 
+ */
+
+public interface SdpHandler
+{
+
+  /**
+   * o= (originator and session identifier)
+   */
+
+  default void onOrigin(
+      final CharSequence username,
+      final long sessionId,
+      final long version,
+      final CharSequence networkType,
+      final CharSequence addressType,
+      final CharSequence address)
+  {
+  }
+
+  /**
+   * s= (session name)
+   */
+
+  default void onSessionName(final CharSequence name)
+  {
+  }
+
+  /**
+   * c= (connection information), either at the session level or inside the current media section.
+   */
+
+  default void onConnection(final CharSequence networkType, final CharSequence addressType, final CharSequence address)
+  {
+  }
+
+  /**
+   * a= line, either at the session level or inside the current media section. The value is null for property attributes (e.g,
+   * "a=sendrecv").
+   */
+
+  default void onAttribute(final CharSequence key, final CharSequence value)
+  {
+  }
+
+  /**
+   * m= line, starting a new media section. The formats are the remainder of the line, e.g "0 8 101".
+   */
+
+  default void onMediaStart(final CharSequence type, final int port, final CharSequence protocol, final CharSequence formats)
+  {
+  }
+
+  /**
+   * m= line, as {@link #onMediaStart(CharSequence, int, CharSequence, CharSequence)}, including the number of ports when the line uses
+   * the "port/number of ports" form (or 0 when it doesn't). By default, calls the variant without the number of ports.
+   */
+
+  default void onMediaStart(
+      final CharSequence type,
+      final int port,
+      final int numberOfPorts,
+      final CharSequence protocol,
+      final CharSequence formats)
+  {
+    this.onMediaStart(type, port, protocol, formats);
+  }
+
+  /**
+   * the end of the current media section.
+   */
+
+  default void onMediaEnd()
+  {
+  }
+
+  /**
+   * any other line (e.g, b=, t=, k=), passed with its type and raw value.
+   */
+
+  default void onLine(final char type, final CharSequence value)
+  {
+  }
+
+}
@@ -0,0 +1,110 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded pool of model instances, so that equal values held by many session descriptions (e.g, the same rtpmap attributes, the same
+ * c= line for our media anchors) share one instance rather than each holding a copy.
+ * 
+ * Pass one to the parser with {@link SdpParserOptions#withPool(SdpInternPool)}, and it will intern the {@link Origin},
+ * {@link Connection}, {@link Attribute} and {@link Media} instances it creates. Pooled media don't keep a reference to the text they were
+ * parsed from, so they are always rendered from their model. Instances built by hand can be interned with
+ * {@link #intern(Object)}:
+ * 
+ * <pre>
+ * Connection anchor = pool.intern(Connection.builder().networkType("IN").addressType("IP4").address("192.0.2.1").build());
+ * </pre>
+ * 
+ * The pool is a fixed size table indexed by hash, with each slot holding the most recent value to land in it, so its size is bounded and a
+ * value which stops being interned is eventually replaced. Only immutable values may be interned.
+ * 
+ * Instances are thread safe, and are intended to be shared.
+ * 
+ */
+
+public final class SdpInternPool
+{
+
+  private final AtomicReferenceArray<Object> table;
+  private final int mask;
+
+  /**
+   * a pool holding at most the given number of values (rounded up to a power of two).
+   */
+
+  public SdpInternPool(final int size)
+  {
+
+    if (size <= 0)
+    {
+      throw new IllegalArgumentException("size must be positive");
+    }
+
+    final int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+
+    this.table = new AtomicReferenceArray<>(capacity);
+    this.mask = capacity - 1;
+
+  }
+
+  /**
+   * an instance equal to the given value: the one already in the pool if there is one, otherwise the value itself, which then replaces
+   * whatever was in its slot.
+   */
+
+  @SuppressWarnings("unchecked")
+  public <T> T intern(final T value)
+  {
+
+    if (value == null)
+    {
+      return null;
+    }
+
+    final int hash = value.hashCode();
+    final int idx = (hash ^ (hash >>> 16)) & this.mask;
+
+    final Object existing = this.table.get(idx);
+
+    // compared by class too, as e.g lists of different types can be equal but aren't interchangeable.
+    if (existing != null && existing.getClass() == value.getClass() && existing.equals(value))
+    {
+      return (T) existing;
+    }
+
+    this.table.lazySet(idx, value);
+
+    return value;
+
+  }
+
+  /**
+   * the number of values the pool can hold.
+   */
+
+  public int capacity()
+  {
+    return this.table.length();
+  }
+
+}
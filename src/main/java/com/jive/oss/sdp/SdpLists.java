@@ -0,0 +1,220 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * List operations for the model's withers.
+ * 
+ * The model holds read-only snapshots of its lists (see {@link #snapshot(List)}), so accessors hand them out as they are rather than
+ * copying them. Each operation returns a new snapshot, or the list it was given if nothing changed. As Lombok's withers return the same
+ * instance when passed the same value, an edit which is a no-op returns the same model instance, keeping anything memoized on it.
+ * 
+ */
+
+final class SdpLists
+{
+
+  private SdpLists()
+  {
+  }
+
+  /**
+   * the list the model should hold for the given one: the list itself if it can't be modified, otherwise a read-only copy of it, so
+   * that the model (and anything memoized from it) can't be changed through a list the caller still holds.
+   */
+
+  static <T> List<T> snapshot(final List<T> list)
+  {
+    if (list == null || list instanceof Snapshot || list instanceof PayloadTypeList || list instanceof LazyMediaList)
+    {
+      return list;
+    }
+    return new Snapshot<>(new ArrayList<>(list));
+  }
+
+  /**
+   * a read-only list over one which the caller created and will not modify or hand out, so it doesn't need copying.
+   */
+
+  static <T> List<T> adopt(final List<T> owned)
+  {
+    if (owned == null || owned instanceof Snapshot || owned instanceof PayloadTypeList || owned instanceof LazyMediaList)
+    {
+      return owned;
+    }
+    return new Snapshot<>(owned);
+  }
+
+  /**
+   * a read-only list over one that nothing else refers to.
+   */
+
+  private static final class Snapshot<T> extends AbstractList<T> implements RandomAccess
+  {
+
+    private final List<T> items;
+
+    Snapshot(final List<T> items)
+    {
+      this.items = items;
+    }
+
+    @Override
+    public T get(final int index)
+    {
+      return this.items.get(index);
+    }
+
+    @Override
+    public int size()
+    {
+      return this.items.size();
+    }
+
+  }
+
+  /**
+   * a list held by the model, for handing out: the snapshot itself, or an empty list if null.
+   */
+
+  static <T> List<T> view(final List<T> list)
+  {
+    return (list == null) ? Collections.emptyList() : list;
+  }
+
+  static <T> List<T> append(final List<T> list, final T item)
+  {
+    final List<T> result = new ArrayList<>((list == null) ? 1 : list.size() + 1);
+    if (list != null)
+    {
+      result.addAll(list);
+    }
+    result.add(item);
+    return adopt(result);
+  }
+
+  static <T> List<T> appendAll(final List<T> list, final Collection<? extends T> items)
+  {
+    if (items.isEmpty() && list != null)
+    {
+      return list;
+    }
+    final List<T> result = new ArrayList<>(((list == null) ? 0 : list.size()) + items.size());
+    if (list != null)
+    {
+      result.addAll(list);
+    }
+    result.addAll(items);
+    return adopt(result);
+  }
+
+  /**
+   * the list without the items that match, or the list itself if none do.
+   */
+
+  static <T> List<T> removeIf(final List<T> list, final Predicate<? super T> predicate)
+  {
+
+    if (list == null)
+    {
+      return null;
+    }
+
+    List<T> result = null;
+
+    for (int i = 0; i < list.size(); ++i)
+    {
+      final T item = list.get(i);
+      if (predicate.test(item))
+      {
+        if (result == null)
+        {
+          result = new ArrayList<>(list.subList(0, i));
+        }
+      }
+      else if (result != null)
+      {
+        result.add(item);
+      }
+    }
+
+    return (result == null) ? list : adopt(result);
+
+  }
+
+  /**
+   * the list with each item passed through the function, or the list itself if the function returned every item as is.
+   */
+
+  static <T> List<T> map(final List<T> list, final Function<? super T, ? extends T> mapper)
+  {
+
+    if (list == null)
+    {
+      return null;
+    }
+
+    List<T> result = null;
+
+    for (int i = 0; i < list.size(); ++i)
+    {
+      final T item = list.get(i);
+      final T mapped = mapper.apply(item);
+      if (result == null && mapped != item)
+      {
+        result = new ArrayList<>(list.size());
+        result.addAll(list.subList(0, i));
+      }
+      if (result != null)
+      {
+        result.add(mapped);
+      }
+    }
+
+    return (result == null) ? list : adopt(result);
+
+  }
+
+  /**
+   * the list with the item at the given index replaced, or the list itself if it is the same item.
+   */
+
+  static <T> List<T> set(final List<T> list, final int index, final T item)
+  {
+    if (list.get(index) == item)
+    {
+      return list;
+    }
+    final List<T> result = new ArrayList<>(list);
+    result.set(index, item);
+    return adopt(result);
+  }
+
+}
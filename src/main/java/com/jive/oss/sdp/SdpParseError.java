@@ -0,0 +1,80 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Why an SDP could not be parsed.
+ * 
+ * @see SdpParseException#error()
+ */
+
+public enum SdpParseError
+{
+
+  /**
+   * the SDP doesn't start with a v= line.
+   */
+
+  MISSING_VERSION,
+
+  /**
+   * the v= line has a version other than 0.
+   */
+
+  INVALID_VERSION,
+
+  /**
+   * a line isn't of the form "&lt;type&gt;=&lt;value&gt;".
+   */
+
+  INVALID_LINE,
+
+  /**
+   * an o=, c= or m= line has too few fields.
+   */
+
+  MISSING_FIELD,
+
+  /**
+   * a numeric field (session id, version, port) isn't an unsigned decimal number.
+   */
+
+  INVALID_NUMBER,
+
+  /**
+   * the value of a well-known attribute (e.g, rtpmap) is malformed.
+   */
+
+  INVALID_ATTRIBUTE,
+
+  /**
+   * the SDP exceeds one of the {@link SdpParserOptions} limits.
+   */
+
+  LIMIT_EXCEEDED,
+
+  /**
+   * anything else.
+   */
+
+  MALFORMED
+
+}
@@ -0,0 +1,133 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Thrown when an SDP is malformed.
+ * 
+ * These are raised for input we don't control (broken endpoints, scanners), so they don't capture a stack trace, which would otherwise
+ * make rejecting bad input far more expensive than parsing good input. The error code, line and offset identify the problem instead.
+ * 
+ * This is an {@link IllegalArgumentException}, which is what the parser has always thrown for bad input.
+ */
+
+public class SdpParseException extends IllegalArgumentException
+{
+
+  private static final long serialVersionUID = 1L;
+
+  private final SdpParseError error;
+  private final int line;
+  private final int offset;
+
+  public SdpParseException(final SdpParseError error, final String message, final int line, final int offset)
+  {
+    super(message);
+    this.error = error;
+    this.line = line;
+    this.offset = offset;
+  }
+
+  /**
+   * an error at the given index of the text being parsed, which the line number is worked out from.
+   */
+
+  static SdpParseException at(final SdpParseError error, final String message, final CharSequence text, final int offset)
+  {
+    return new SdpParseException(error, message, lineOf(text, offset), offset);
+  }
+
+  /**
+   * an error that isn't tied to a position in the SDP text (e.g, when decoding an attribute value).
+   */
+
+  static SdpParseException of(final SdpParseError error, final String message)
+  {
+    return new SdpParseException(error, message, -1, -1);
+  }
+
+  /**
+   * this error, with its position moved on by the given number of lines and characters. Used when the SDP is parsed in pieces, to give
+   * the position in the whole SDP rather than in the piece.
+   */
+
+  SdpParseException shift(final int lines, final int offset)
+  {
+    if (this.line == -1)
+    {
+      return this;
+    }
+    return new SdpParseException(this.error, super.getMessage(), this.line + lines, this.offset + offset);
+  }
+
+  private static int lineOf(final CharSequence text, final int offset)
+  {
+    int line = 1;
+    for (int i = 0; i < offset; ++i)
+    {
+      if (text.charAt(i) == '\n')
+      {
+        ++line;
+      }
+    }
+    return line;
+  }
+
+  public SdpParseError error()
+  {
+    return this.error;
+  }
+
+  /**
+   * the line the error was found on, starting at 1, or -1 if not known.
+   */
+
+  public int line()
+  {
+    return this.line;
+  }
+
+  /**
+   * the index of the character in the SDP that the error was found at, or -1 if not known.
+   */
+
+  public int offset()
+  {
+    return this.offset;
+  }
+
+  @Override
+  public String getMessage()
+  {
+    if (this.line == -1)
+    {
+      return super.getMessage();
+    }
+    return super.getMessage() + " (line " + this.line + ", offset " + this.offset + ")";
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace()
+  {
+    return this;
+  }
+
+}
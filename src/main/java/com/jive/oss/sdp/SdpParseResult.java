@@ -0,0 +1,118 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.Optional;
+
+/**
+ * The outcome of parsing a single SDP: either the {@link SessionDescription}, or the reason it could not be parsed.
+ * 
+ */
+
+public final class SdpParseResult
+{
+
+  private final SessionDescription sdp;
+  private final RuntimeException error;
+
+  private SdpParseResult(final SessionDescription sdp, final RuntimeException error)
+  {
+    this.sdp = sdp;
+    this.error = error;
+  }
+
+  public static SdpParseResult success(final SessionDescription sdp)
+  {
+    return new SdpParseResult(sdp, null);
+  }
+
+  public static SdpParseResult failure(final RuntimeException error)
+  {
+    return new SdpParseResult(null, error);
+  }
+
+  public boolean isSuccess()
+  {
+    return this.error == null;
+  }
+
+  /**
+   * the parsed SDP, or throws the parse error if it failed.
+   */
+
+  public SessionDescription get()
+  {
+    if (this.error != null)
+    {
+      throw this.error;
+    }
+    return this.sdp;
+  }
+
+  public Optional<SessionDescription> sdp()
+  {
+    return Optional.ofNullable(this.sdp);
+  }
+
+  public Optional<RuntimeException> error()
+  {
+    return Optional.ofNullable(this.error);
+  }
+
+  /**
+   * why parsing failed, or null if it didn't. Failures other than an {@link SdpParseException} are reported as
+   * {@link SdpParseError#MALFORMED}.
+   */
+
+  public SdpParseError errorCode()
+  {
+    if (this.error == null)
+    {
+      return null;
+    }
+    return (this.error instanceof SdpParseException) ? ((SdpParseException) this.error).error() : SdpParseError.MALFORMED;
+  }
+
+  /**
+   * the line parsing failed on, starting at 1, or -1 if it didn't fail or the line isn't known.
+   */
+
+  public int line()
+  {
+    return (this.error instanceof SdpParseException) ? ((SdpParseException) this.error).line() : -1;
+  }
+
+  /**
+   * the offset in the SDP parsing failed at, or -1 if it didn't fail or the offset isn't known.
+   */
+
+  public int offset()
+  {
+    return (this.error instanceof SdpParseException) ? ((SdpParseException) this.error).offset() : -1;
+  }
+
+  @Override
+  public String toString()
+  {
+    return (this.error == null) ? "SdpParseResult(success)" : ("SdpParseResult(failure: " + this.error.getMessage() + ")");
+  }
+
+}
@@ -20,235 +20,522 @@ package com.jive.oss.sdp;
  * #L%
  */
 
-import java.util.LinkedList;
-import java.util.List;
+import java.nio.ByteBuffer;
 
-import com.jive.oss.sdp.Connection.ConnectionBuilder;
-import com.jive.oss.sdp.Media.MediaBuilder;
-import com.jive.oss.sdp.Origin.OriginBuilder;
-import com.jive.oss.sdp.SessionDescription.SessionDescriptionBuilder;
+/**
+ * Parses an SDP body read through an {@link SdpReader}.
+ * 
+ * The parser is event driven: it walks the lines once, calling an {@link SdpHandler} for each one. {@link #read()} builds a
+ * {@link SessionDescription} from those events, while {@link #parse(SdpHandler)} hands them to the caller directly, without allocating
+ * any of the model.
+ * 
+ */
 
 public class SdpParser
 {
 
-  private final SdpReader reader;
-  private final SessionDescriptionBuilder b = SessionDescription.builder();
+  private SdpReader reader;
+  private CharSequence text;
+
+  // reusable views handed to the handler.
+  private final CharSlice[] slices = new CharSlice[6];
+
+  private final SdpTokenizer fields = new SdpTokenizer();
+
+  private final SdpParserOptions options;
+
+  private boolean versionSeen;
+  private boolean inMedia;
+
+  // what has been read so far, checked against the options.
+  private long bytes;
+  private int lines;
+  private int medias;
+  private int attributes;
 
   public SdpParser(final SdpReader reader)
+  {
+    this(reader, SdpParserOptions.DEFAULT);
+  }
+
+  public SdpParser(final SdpReader reader, final SdpParserOptions options)
+  {
+    this.options = options;
+    this.reset(reader);
+  }
+
+  /**
+   * continues parsing from another reader, keeping track of where we are in the SDP. Used when the body arrives in pieces.
+   */
+
+  void reset(final SdpReader reader)
   {
     this.reader = reader;
+    this.text = reader.text();
+    this.bytes += reader.limit() - reader.position();
+    this.check(this.bytes, this.options.getMaxBytes(), "bytes");
+  }
+
+  /**
+   * the text currently being read.
+   */
+
+  CharSequence text()
+  {
+    return this.text;
+  }
+
+  /**
+   * the index in {@link #text()} of the line about to be read.
+   */
+
+  int position()
+  {
+    return this.reader.position();
   }
 
   public SessionDescription read()
   {
+    // strings can't change under us, so the model can keep referring to them rather than re-rendering.
+    final ModelBuilder model = new ModelBuilder((this.text instanceof String) ? this : null, this.options.getPool());
+    this.parse(model);
+    return model.build();
+  }
 
-    // Session description
+  /**
+   * Reads the session level lines, but only indexes where each media section starts and ends. Each {@link Media} is parsed the first time
+   * it is accessed, which means errors in a media section are not reported until then.
+   */
+
+  public SessionDescription readLazy()
+  {
+
+    final ModelBuilder model = new ModelBuilder(this, this.options.getPool());
 
-    if (this.reader.remaining() < 1)
+    this.parseVersion();
+
+    while (this.reader.hasRemaining() && this.reader.nextType() != 'm')
     {
-      throw new IllegalArgumentException("v=0 missing from SDP");
+      this.parseLine(model);
     }
 
-    // v= (protocol version)
+    final LazyMediaList.Builder medias = new LazyMediaList.Builder(this.text, this.options);
+
+    // the lines and media sections are counted here, and each media section's attributes and formats when it is parsed.
+    while (this.reader.hasRemaining())
+    {
+      this.check(++this.lines, this.options.getMaxLines(), "lines");
+      if (this.reader.nextType() == 'm')
+      {
+        this.check(++this.medias, this.options.getMaxMedia(), "media sections");
+        medias.mark(this.reader.position());
+      }
+      this.reader.advance();
+    }
+
+    return model.build(medias.build(this.reader.position()));
+
+  }
+
+  /**
+   * parses the single media section the reader is positioned on.
+   */
 
-    if (!this.reader.nextType().equals("v"))
+  Media readMedia()
+  {
+
+    if (!this.reader.hasRemaining() || this.reader.nextType() != 'm')
     {
-      throw new IllegalArgumentException("Invalid SDP version line");
+      throw SdpParseException.at(SdpParseError.INVALID_LINE, "expected m= line", this.text, this.reader.position());
     }
 
-    if (!this.reader.readValue().equals("0"))
+    final ModelBuilder model = new ModelBuilder(this, this.options.getPool());
+
+    while (this.reader.hasRemaining())
     {
-      throw new IllegalArgumentException("Invalid SDP version");
+      this.parseLine(model);
     }
 
-    this.parseHeaders();
+    model.onMediaEnd();
 
-    return this.b.build();
+    return model.media();
 
   }
 
-  private void parseHeaders()
+  /**
+   * Walks the whole SDP, passing each line to the handler.
+   */
+
+  public void parse(final SdpHandler handler)
   {
+    this.parseAvailable(handler);
+    this.finish(handler);
+  }
 
-    final List<Attribute> attributes = new LinkedList<>();
-    final List<Media> medias = new LinkedList<>();
+  /**
+   * parses all of the lines left in the current reader, which may not be the end of the SDP.
+   */
 
-    while (this.reader.remaining() > 0)
+  void parseAvailable(final SdpHandler handler)
+  {
+
+    if (!this.versionSeen && this.reader.hasRemaining())
+    {
+      this.parseVersion();
+    }
+
+    while (this.reader.hasRemaining())
+    {
+      this.parseLine(handler);
+    }
+
+  }
+
+  /**
+   * signals the end of the SDP.
+   */
+
+  void finish(final SdpHandler handler)
+  {
+
+    if (!this.versionSeen)
+    {
+      throw SdpParseException.at(SdpParseError.MISSING_VERSION, "v=0 missing from SDP", this.text, this.reader.position());
+    }
+
+    if (this.inMedia)
     {
+      handler.onMediaEnd();
+      this.inMedia = false;
+    }
 
-      final String type = this.reader.nextType().toString();
+  }
+
+  /**
+   * Parses the SDP, passing each line to the handler instead of building a {@link SessionDescription}.
+   */
+
+  public static void parse(final CharSequence sdp, final SdpHandler handler)
+  {
+    parse(sdp, SdpParserOptions.DEFAULT, handler);
+  }
 
-      if (type.equals("m"))
+  /**
+   * As {@link #parse(CharSequence, SdpHandler)}, failing if the SDP exceeds any of the given limits.
+   */
+
+  public static void parse(final CharSequence sdp, final SdpParserOptions options, final SdpHandler handler)
+  {
+    new SdpParser(new SdpReader(sdp), options).parse(handler);
+  }
+
+  /**
+   * As {@link #parse(CharSequence, SdpHandler)}, reading the bytes in place.
+   */
+
+  public static void parse(final byte[] sdp, final SdpHandler handler)
+  {
+    parse(new ByteCharSequence(sdp), handler);
+  }
+
+  /**
+   * As {@link #parse(CharSequence, SdpHandler)}, reading the bytes between the buffer's position and limit in place, without changing its
+   * position.
+   */
+
+  public static void parse(final ByteBuffer sdp, final SdpHandler handler)
+  {
+    parse(SdpUtils.wrap(sdp, sdp.position(), sdp.remaining()), handler);
+  }
+
+  /**
+   * scans only as far as the o= line (stopping at the first m= line) and returns its session id and version, or null if there isn't one.
+   */
+
+  static OriginVersion peekOrigin(final SdpReader reader)
+  {
+
+    final CharSequence value = reader.text();
+
+    while (reader.hasRemaining())
+    {
+
+      final char type = reader.nextType();
+
+      if (type == 'm')
       {
         break;
       }
 
-      final String value = this.reader.readValue().toString();
-
-      switch (type)
+      if (type == 'o')
       {
-        case "o":
-          // o= (originator and session identifier)
-          this.b.origin(this.parseOrigin(value));
-          break;
-        case "s":
-          // s= (session name)
-          this.b.subject(value);
-          break;
-        case "i":
-          // i=* (session information)
-          break;
-        case "u":
-          // u=* (URI of description)
-          break;
-        case "e":
-          // e=* (email address)
-          break;
-        case "p":
-          // p=* (phone number)
-          break;
-        case "c":
-          // c=* (connection information -- not required if included in
-          // all media)
-          this.b.connection(this.parseConnection(value));
-          break;
-        case "b":
-          // b=* (zero or more bandwidth information lines)
-          break;
-        case "z":
-          // One or more time descriptions ("t=" and "r=" lines; see below)
-          // z=* (time zone adjustments)
-          break;
-        case "k":
-          // k=* (encryption key)
-          break;
-        case "a":
-          // a=* (zero or more session attribute lines)
-          attributes.add(Attribute.fromString(value));
-          break;
-        case "t":
-          // Zero or more media descriptions
-          // Time description
-          // t= (time the session is active)
-          break;
-        case "r":
-          // r=* (zero or more repeat times)
-          break;
-        default:
-          this.b.unknown(this.reader.nextType().toString());
-          break;
+
+        final SdpTokenizer fields = new SdpTokenizer().reset(value, reader.valueStart(), reader.valueEnd());
+
+        // username
+        fields.next();
+
+        final long sessionId = fields.nextLong();
+        final long version = fields.nextLong();
+
+        return new OriginVersion(sessionId, version);
 
       }
 
+      reader.advance();
+
+    }
+
+    return null;
+
+  }
+
+  private void parseVersion()
+  {
+
+    // Session description
+
+    if (!this.reader.hasRemaining())
+    {
+      throw SdpParseException.at(SdpParseError.MISSING_VERSION, "v=0 missing from SDP", this.text, this.reader.position());
     }
 
-    this.b.attributes(attributes);
+    // v= (protocol version)
 
-    while (this.reader.remaining() > 0)
+    if (this.reader.nextType() != 'v')
     {
-      final Media m = this.parseMedia();
-      medias.add(m);
+      throw SdpParseException.at(SdpParseError.MISSING_VERSION, "Invalid SDP version line", this.text, this.reader.position());
     }
 
-    this.b.medias(medias);
+    final int start = this.reader.valueStart();
+
+    if (this.reader.valueEnd() - start != 1 || this.text.charAt(start) != '0')
+    {
+      throw SdpParseException.at(SdpParseError.INVALID_VERSION, "Invalid SDP version", this.text, start);
+    }
+
+    this.versionSeen = true;
+    this.lines++;
+
+    this.reader.advance();
 
   }
 
-  private Connection parseConnection(final String value)
+  /**
+   * parses the line the reader is positioned on, and moves past it.
+   */
+
+  private void parseLine(final SdpHandler handler)
   {
-    final ConnectionBuilder b = Connection.builder();
-    final List<String> parts = SdpUtils.split(value, " ");
-    b.networkType(parts.get(0));
-    b.addressType(parts.get(1));
-    b.address(parts.get(2));
-    return b.build();
+
+    this.check(++this.lines, this.options.getMaxLines(), "lines");
+
+    final char type = this.reader.nextType();
+    final int start = this.reader.valueStart();
+    final int end = this.reader.valueEnd();
+
+    if (type == 'm')
+    {
+      this.check(++this.medias, this.options.getMaxMedia(), "media sections");
+      if (this.inMedia)
+      {
+        handler.onMediaEnd();
+      }
+      this.inMedia = true;
+      this.attributes = 0;
+      this.parseMedia(handler, start, end);
+    }
+    else if (this.inMedia)
+    {
+      this.parseMediaLine(handler, type, start, end);
+    }
+    else
+    {
+      this.parseSessionLine(handler, type, start, end);
+    }
+
+    this.reader.advance();
+
   }
 
-  private Origin parseOrigin(final String value)
+  private void parseSessionLine(final SdpHandler handler, final char type, final int start, final int end)
   {
 
-    final List<String> parts = SdpUtils.split(value, " ");
+    switch (type)
+    {
+      case 'o':
+        // o= (originator and session identifier)
+        this.parseOrigin(handler, start, end);
+        break;
+      case 's':
+        // s= (session name)
+        handler.onSessionName(this.slice(0, start, end));
+        break;
+      case 'c':
+        // c=* (connection information -- not required if included in
+        // all media)
+        this.parseConnection(handler, start, end);
+        break;
+      case 'a':
+        // a=* (zero or more session attribute lines)
+        this.parseAttribute(handler, start, end);
+        break;
+      default:
+        // i=* (session information)
+        // u=* (URI of description)
+        // e=* (email address)
+        // p=* (phone number)
+        // b=* (zero or more bandwidth information lines)
+        // One or more time descriptions ("t=" and "r=" lines)
+        // z=* (time zone adjustments)
+        // k=* (encryption key)
+        handler.onLine(type, this.slice(0, start, end));
+        break;
+    }
+
+  }
 
-    final OriginBuilder b = Origin.builder();
+  private void parseMediaLine(final SdpHandler handler, final char type, final int start, final int end)
+  {
 
-    b.username(parts.get(0));
-    b.sessionId(Long.parseLong(parts.get(1)));
-    b.version(Long.parseLong(parts.get(2)));
-    b.networkType(parts.get(3));
-    b.addressType(parts.get(4));
-    b.address(parts.get(5));
+    switch (type)
+    {
+      case 'c':
+        // c=* (connection information -- optional if included at
+        // session level)
+        this.parseConnection(handler, start, end);
+        break;
+      case 'a':
+        // a=* (zero or more media attribute lines)
+        this.parseAttribute(handler, start, end);
+        break;
+      default:
+        // i=* (media title)
+        // b=* (zero or more bandwidth information lines)
+        // k=* (encryption key)
+        handler.onLine(type, this.slice(0, start, end));
+        break;
+    }
 
-    return b.build();
+  }
 
+  private void parseAttribute(final SdpHandler handler, final int start, final int end)
+  {
+    this.check(++this.attributes, this.options.getMaxAttributes(), "attributes");
+    final int pos = SdpUtils.indexOf(this.text, ':', start, end);
+    if (pos == -1)
+    {
+      handler.onAttribute(this.slice(0, start, end), null);
+    }
+    else
+    {
+      handler.onAttribute(this.slice(0, start, pos), this.slice(1, pos + 1, end));
+    }
   }
 
+  private void parseConnection(final SdpHandler handler, final int start, final int end)
+  {
+
+    final SdpTokenizer fields = this.fields.reset(this.text, start, end);
 
-  private Media parseMedia()
+    final CharSequence networkType = this.field(0, fields.next());
+    final CharSequence addressType = this.field(1, fields.next());
+    final CharSequence address = this.field(2, fields.next());
+
+    handler.onConnection(networkType, addressType, address);
+
+  }
+
+  private void parseOrigin(final SdpHandler handler, final int start, final int end)
   {
 
-    final MediaBuilder b = Media.builder();
+    final SdpTokenizer fields = this.fields.reset(this.text, start, end);
+
+    final CharSequence username = this.field(0, fields.next());
+    final long sessionId = fields.nextLong();
+    final long version = fields.nextLong();
+    final CharSequence networkType = this.field(1, fields.next());
+    final CharSequence addressType = this.field(2, fields.next());
+    final CharSequence address = this.field(3, fields.next());
 
-    final List<Attribute> attributes = new LinkedList<>();
+    handler.onOrigin(username, sessionId, version, networkType, addressType, address);
 
-    final List<String> mlines = SdpUtils.split(this.reader.readValue(), " ");
+  }
+
+  private void parseMedia(final SdpHandler handler, final int start, final int end)
+  {
 
-    // private final String type;
-    b.type(mlines.get(0));
+    final SdpTokenizer fields = this.fields.reset(this.text, start, end);
 
-    // private final int port;
-    b.port(Integer.parseInt(mlines.get(1)));
+    final CharSequence type = this.field(0, fields.next());
 
-    // private final String protocol;
-    b.protocol(mlines.get(2));
+    // <port> or <port>/<number of ports>
+    fields.next();
 
-    // private final List<Integer> formats;
-    b.formats(mlines.subList(3, mlines.size()));
+    final int slash = fields.indexOf('/');
 
-    while (this.reader.remaining() > 0)
+    final int port;
+    final int numberOfPorts;
+
+    if (slash == -1)
+    {
+      port = fields.parseInt(fields.start(), fields.end());
+      numberOfPorts = 0;
+    }
+    else
     {
+      port = fields.parseInt(fields.start(), slash);
+      numberOfPorts = fields.parseInt(slash + 1, fields.end());
+    }
 
-      final String type = this.reader.nextType().toString();
+    final CharSequence protocol = this.field(1, fields.next());
+    final int rest = fields.rest();
 
-      if (type.equals("m"))
+    if (this.options.getMaxFormats() > 0)
+    {
+      int count = 0;
+      while (fields.hasNext())
       {
-        break;
+        fields.next();
+        this.check(++count, this.options.getMaxFormats(), "formats");
       }
+    }
 
-      final String value = this.reader.readValue().toString();
+    final CharSequence formats = this.slice(2, rest, end);
 
-      switch (type)
-      {
-        case "i":
-          // i=* (media title)
-          break;
-        case "c":
-          // c=* (connection information -- optional if included at
-          // session level)
-          b.connection(this.parseConnection(value));
-          break;
-        case "b":
-          // b=* (zero or more bandwidth information lines)
-          break;
-        case "k":
-          // k=* (encryption key)
-          break;
-        case "a":
-          // a=* (zero or more media attribute lines)
-          attributes.add(Attribute.fromString(value));
-          break;
-        default:
-          b.unknown(this.reader.nextType().toString());
-          break;
+    handler.onMediaStart(type, port, numberOfPorts, protocol, formats);
 
-      }
-
-    }
+  }
 
-    b.attributes(attributes);
+  /**
+   * fails if a count has gone past its limit (0 being no limit).
+   */
 
+  private void check(final long count, final int limit, final String what)
+  {
+    if (limit > 0 && count > limit)
+    {
+      throw SdpParseException.at(
+          SdpParseError.LIMIT_EXCEEDED,
+          "too many " + what + " in SDP (limit " + limit + ")",
+          this.text,
+          this.reader.position());
+    }
+  }
 
-    return b.build();
+  private CharSequence field(final int slot, final SdpTokenizer fields)
+  {
+    return this.slice(slot, fields.start(), fields.end());
+  }
 
+  private CharSequence slice(final int slot, final int start, final int end)
+  {
+    CharSlice slice = this.slices[slot];
+    if (slice == null)
+    {
+      slice = this.slices[slot] = new CharSlice();
+    }
+    return slice.set(this.text, start, end);
   }
 
 }
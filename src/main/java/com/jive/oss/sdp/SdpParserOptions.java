@@ -0,0 +1,79 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import lombok.Builder;
+import lombok.Value;
+import lombok.experimental.Wither;
+
+/**
+ * Limits on the size of the SDP the parser will accept, so that parsing SDP from untrusted peers can't be used to exhaust CPU or heap.
+ * 
+ * The parser checks them as it reads, and fails with an {@link SdpParseException} ({@link SdpParseError#LIMIT_EXCEEDED}) as soon as one
+ * is exceeded. A limit of 0 means no limit, which is what {@link #DEFAULT} (and any limit not set on the builder) uses.
+ * 
+ * Also carries the optional {@link SdpInternPool} for the parser to intern values through.
+ * 
+ */
+
+@Value
+@Builder
+@Wither
+public class SdpParserOptions
+{
+
+  /**
+   * no limits.
+   */
+
+  public static final SdpParserOptions DEFAULT = SdpParserOptions.builder().build();
+
+  /**
+   * limits that comfortably fit any real world offer or answer, for parsing SDP from peers we don't trust.
+   */
+
+  public static final SdpParserOptions UNTRUSTED = SdpParserOptions.builder()
+      .maxBytes(64 * 1024)
+      .maxLines(1024)
+      .maxAttributes(256)
+      .maxMedia(32)
+      .maxFormats(128)
+      .build();
+
+  // the size of the SDP, in bytes (or chars, for text).
+  private int maxBytes;
+
+  // the number of (non-empty) lines in the SDP.
+  private int maxLines;
+
+  // the number of a= lines in the session section, or in any one media section.
+  private int maxAttributes;
+
+  // the number of m= lines.
+  private int maxMedia;
+
+  // the number of formats on any one m= line.
+  private int maxFormats;
+
+  // if set, the pool the parsed values are interned through, so that values common to many session descriptions are shared.
+  private SdpInternPool pool;
+
+}
@@ -0,0 +1,275 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Parses an SDP body that arrives in pieces, e.g from several reads of a stream transport.
+ * 
+ * Each chunk is parsed as soon as it is fed: complete lines are read in place from the chunk, and only a line that is split across chunks
+ * is copied aside until the rest of it arrives. The chunk can be reused by the caller as soon as {@link #feed(byte[], int, int)} returns.
+ * Call {@link #complete()} once the whole body (e.g, Content-Length bytes) has been fed to get the {@link SessionDescription}.
+ * 
+ * Instances are not thread safe, and are single use.
+ * 
+ */
+
+public class SdpPushParser
+{
+
+  private final ModelBuilder model;
+  private final SdpParserOptions options;
+  private SdpParser parser;
+
+  private long fed;
+
+  // the number of line breaks in the chunks fed so far.
+  private int lines;
+
+  // a line split across chunks, and where it starts in the body.
+  private byte[] partial = new byte[128];
+  private int partialLength;
+  private long partialOffset;
+  private int partialLines;
+
+  // where the text the parser is reading starts in the body, so errors can be reported at their position in the whole body.
+  private long textOffset;
+  private int textLines;
+
+  private boolean completed;
+
+  public SdpPushParser()
+  {
+    this(SdpParserOptions.DEFAULT);
+  }
+
+  /**
+   * a parser that fails as soon as the SDP fed to it exceeds any of the given limits.
+   */
+
+  public SdpPushParser(final SdpParserOptions options)
+  {
+    this.options = options;
+    this.model = new ModelBuilder(null, options.getPool());
+  }
+
+  public void feed(final byte[] chunk)
+  {
+    this.feed(chunk, 0, chunk.length);
+  }
+
+  public void feed(final byte[] chunk, final int offset, final int length)
+  {
+    this.feed(new ByteCharSequence(chunk, offset, length));
+  }
+
+  /**
+   * feeds the bytes between the buffer's position and its limit. The position is not changed.
+   */
+
+  public void feed(final ByteBuffer chunk)
+  {
+    this.feed(SdpUtils.wrap(chunk, chunk.position(), chunk.remaining()));
+  }
+
+  private void feed(final CharSequence chunk)
+  {
+
+    if (this.completed)
+    {
+      throw new IllegalStateException("already completed");
+    }
+
+    final int length = chunk.length();
+
+    // where this chunk starts in the body.
+    final long offset = this.fed;
+    final int lines = this.lines;
+
+    this.fed += length;
+
+    // checked here as well as by the parser, as a body without line breaks would otherwise be buffered without limit.
+    if (this.options.getMaxBytes() > 0 && this.fed > this.options.getMaxBytes())
+    {
+      throw SdpParseException.of(SdpParseError.LIMIT_EXCEEDED, "too many bytes in SDP (limit " + this.options.getMaxBytes() + ")");
+    }
+
+    final int last = lastIndexOf(chunk, '\n');
+
+    if (last == -1)
+    {
+      // no line ends in this chunk, so it's all part of the line in progress.
+      this.append(chunk, 0, length, offset, lines);
+      return;
+    }
+
+    this.lines += count(chunk, '\n', last + 1);
+
+    int start = 0;
+
+    if (this.partialLength > 0)
+    {
+      // finish off the line we have been holding on to.
+      final int eol = SdpUtils.indexOf(chunk, '\n', 0, length);
+      this.append(chunk, 0, eol + 1, offset, lines);
+      this.flush();
+      start = eol + 1;
+    }
+
+    if (start <= last)
+    {
+      this.parse(new SdpReader(chunk, start, last + 1), offset, lines);
+    }
+
+    this.append(chunk, last + 1, length, offset + last + 1, this.lines);
+
+  }
+
+  /**
+   * signals that the whole body has been fed, and returns the parsed SDP.
+   */
+
+  public SessionDescription complete()
+  {
+
+    if (this.completed)
+    {
+      throw new IllegalStateException("already completed");
+    }
+
+    this.completed = true;
+
+    this.flush();
+
+    if (this.parser == null)
+    {
+      return SessionDescription.builder().build();
+    }
+
+    try
+    {
+      this.parser.finish(this.model);
+    }
+    catch (final SdpParseException ex)
+    {
+      throw ex.shift(this.textLines, (int) this.textOffset);
+    }
+
+    return this.model.build();
+
+  }
+
+  /**
+   * parses the lines in the reader, whose text starts at the given offset and line (counted from 0) of the body.
+   */
+
+  private void parse(final SdpReader reader, final long offset, final int lines)
+  {
+    try
+    {
+      if (this.parser == null)
+      {
+        if (!reader.hasRemaining())
+        {
+          return;
+        }
+        this.parser = new SdpParser(reader, this.options);
+      }
+      else
+      {
+        this.parser.reset(reader);
+      }
+      this.textOffset = offset;
+      this.textLines = lines;
+      this.parser.parseAvailable(this.model);
+    }
+    catch (final SdpParseException ex)
+    {
+      // positions are relative to the reader's text, rather than the body.
+      throw ex.shift(lines, (int) offset);
+    }
+  }
+
+  private void flush()
+  {
+    if (this.partialLength > 0)
+    {
+      this.parse(new SdpReader(new ByteCharSequence(this.partial, 0, this.partialLength)), this.partialOffset, this.partialLines);
+      this.partialLength = 0;
+    }
+  }
+
+  /**
+   * adds the given part of the chunk to the line in progress. The offset and lines are where the part starts in the body.
+   */
+
+  private void append(final CharSequence chunk, final int start, final int end, final long offset, final int lines)
+  {
+
+    if (this.partialLength == 0)
+    {
+      this.partialOffset = offset;
+      this.partialLines = lines;
+    }
+
+    final int required = this.partialLength + (end - start);
+
+    if (required > this.partial.length)
+    {
+      this.partial = Arrays.copyOf(this.partial, Math.max(required, this.partial.length * 2));
+    }
+
+    for (int i = start; i < end; ++i)
+    {
+      // the chunk views map each byte to a char in 0-255.
+      this.partial[this.partialLength++] = (byte) chunk.charAt(i);
+    }
+
+  }
+
+  private static int count(final CharSequence text, final char ch, final int end)
+  {
+    int count = 0;
+    for (int i = 0; i < end; ++i)
+    {
+      if (text.charAt(i) == ch)
+      {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  private static int lastIndexOf(final CharSequence text, final char ch)
+  {
+    for (int i = text.length() - 1; i >= 0; --i)
+    {
+      if (text.charAt(i) == ch)
+      {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+}
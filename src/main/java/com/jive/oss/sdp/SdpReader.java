@@ -20,70 +20,201 @@ package com.jive.oss.sdp;
  * #L%
  */
 
-import java.util.LinkedList;
-import java.util.List;
+/**
+ * A cursor over the lines of an SDP body.
+ * 
+ * The reader keeps a single offset into the original text, and exposes each line as a type character plus the index range of its value,
+ * so the parser can walk the body in one pass without copying lines out.
+ * 
+ * Empty lines are skipped, and both CRLF and bare LF line endings are accepted.
+ * 
+ */
 
 public class SdpReader
 {
 
-  private final List<String> lines;
+  private final CharSequence text;
+  private final int end;
+
+  // start of the current line, or -1 if there are no more.
+  private int lineStart = -1;
 
-  public SdpReader(final String sdp)
+  // end of the current line, excluding the line terminator.
+  private int lineEnd;
+
+  // where to start looking for the line after this one.
+  private int next;
+
+  public SdpReader(final CharSequence sdp)
   {
+    this(sdp, 0, sdp.length());
+  }
 
-    this.lines = new LinkedList<>();
+  public SdpReader(final CharSequence sdp, final int start, final int end)
+  {
+    this.text = sdp;
+    this.end = end;
+    this.next = start;
+    this.fill();
+  }
 
-    for (final String line : sdp.split("\r?\n"))
+  /**
+   * positions the cursor at the next non-empty line, if there is one.
+   */
+
+  private void fill()
+  {
+
+    while (this.next < this.end)
     {
-      if (line.length() > 0)
+
+      final int start = this.next;
+
+      int eol = SdpUtils.indexOf(this.text, '\n', start, this.end);
+
+      if (eol == -1)
       {
-        this.lines.add(line);
+        eol = this.end;
+        this.next = this.end;
       }
+      else
+      {
+        this.next = eol + 1;
+        if (eol > start && this.text.charAt(eol - 1) == '\r')
+        {
+          --eol;
+        }
+      }
+
+      if (eol > start)
+      {
+        this.lineStart = start;
+        this.lineEnd = eol;
+        return;
+      }
+
     }
 
+    this.lineStart = -1;
+
+  }
+
+  /**
+   * the text being read. Value ranges returned by this reader index into it.
+   */
+
+  public CharSequence text()
+  {
+    return this.text;
+  }
+
+  /**
+   * the index in {@link #text()} of the start of the next line, or the end of the text being read if there are none left.
+   */
+
+  public int position()
+  {
+    return (this.lineStart == -1) ? this.end : this.lineStart;
+  }
+
+  /**
+   * the index in {@link #text()} that the reader stops at.
+   */
+
+  int limit()
+  {
+    return this.end;
   }
 
   /**
-   * returns the next type without removing it. null if there isn't one, or an exception if it's not an SDP line.
+   * true if there is at least one more line to read.
    */
 
-  public CharSequence nextType()
+  public boolean hasRemaining()
   {
+    return this.lineStart != -1;
+  }
+
+  /**
+   * returns the type of the next line without consuming it, or throws an {@link IllegalStateException} if there isn't one.
+   */
 
-    if (this.lines.isEmpty())
+  public char nextType()
+  {
+    if (this.lineStart == -1)
     {
       throw new IllegalStateException();
     }
+    return this.text.charAt(this.lineStart);
+  }
+
+  /**
+   * the index in {@link #text()} of the first character of the next line's value.
+   */
 
-    if (this.lines.get(0).length() == 0)
+  public int valueStart()
+  {
+    if (this.lineStart == -1)
+    {
+      throw new IllegalStateException();
+    }
+    if (this.lineEnd - this.lineStart < 2 || this.text.charAt(this.lineStart + 1) != '=')
     {
-      throw new IllegalStateException(this.lines.get(0));
+      throw SdpParseException.at(
+          SdpParseError.INVALID_LINE,
+          "Invalid SDP line: " + this.text.subSequence(this.lineStart, this.lineEnd),
+          this.text,
+          this.lineStart);
     }
+    return this.lineStart + 2;
+  }
 
-    return this.lines.get(0).substring(0, 1);
+  /**
+   * the index in {@link #text()} just past the last character of the next line's value.
+   */
 
+  public int valueEnd()
+  {
+    if (this.lineStart == -1)
+    {
+      throw new IllegalStateException();
+    }
+    return this.lineEnd;
   }
 
   /**
-   * reads the value of the next line, removing it in the process.
+   * consumes the next line.
    */
 
-  public CharSequence readValue()
+  public void advance()
   {
-    final String line = this.lines.remove(0);
-    return line.substring(2);
+    if (this.lineStart == -1)
+    {
+      throw new IllegalStateException();
+    }
+    this.fill();
   }
 
-  public int remaining()
+  /**
+   * reads the value of the next line, consuming it in the process.
+   */
+
+  public CharSequence readValue()
   {
-    return this.lines.size();
+    final CharSequence value = this.text.subSequence(this.valueStart(), this.valueEnd());
+    this.advance();
+    return value;
   }
 
-  public boolean skip(final String string)
+  /**
+   * consumes the next line if it is of the given type.
+   */
+
+  public boolean skip(final char type)
   {
-    if (this.nextType().equals(string))
+    if (this.hasRemaining() && this.nextType() == type)
     {
-      this.readValue();
+      this.advance();
       return true;
     }
     return false;
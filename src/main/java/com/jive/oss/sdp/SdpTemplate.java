@@ -0,0 +1,316 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A {@link SessionDescription} compiled into a fixed byte layout, with slots for the values that change from one offer to the next: the
+ * o= session id and version, the address (in the o= line and every c= line which has one), and the port of each m= line. A c= line with
+ * an empty address is left as it is.
+ * 
+ * Rendering copies the fixed bytes and writes the slot values between them, so generating a stream of near identical offers doesn't
+ * rebuild or re-render the model each time:
+ * 
+ * <pre>
+ * SdpTemplate template = SdpTemplate.compile(offer);
+ * int length = template.render(buffer, sessionId, 1, "10.0.0.1", 5004, 5006);
+ * </pre>
+ * 
+ * The address must be of the same type (IP4 or IP6) as the prototype's, as the type is part of the fixed bytes.
+ * 
+ * Instances are immutable, and thread safe.
+ * 
+ */
+
+public final class SdpTemplate
+{
+
+  /**
+   * the values a template fills in.
+   */
+
+  enum Slot
+  {
+    SESSION_ID,
+    VERSION,
+    ADDRESS,
+    PORT
+  }
+
+  private final SessionDescription prototype;
+
+  // the fixed bytes before each slot, and after the last.
+  private final byte[][] literals;
+  private final Slot[] slots;
+
+  // sum of the literals.
+  private final int fixedLength;
+  private final int ports;
+
+  private SdpTemplate(final SessionDescription prototype, final byte[][] literals, final Slot[] slots)
+  {
+    this.prototype = prototype;
+    this.literals = literals;
+    this.slots = slots;
+    this.fixedLength = Arrays.stream(literals).mapToInt(b -> b.length).sum();
+    this.ports = (int) Arrays.stream(slots).filter(s -> s == Slot.PORT).count();
+  }
+
+  /**
+   * compiles a template from the given SDP, which is always rendered from its model.
+   */
+
+  public static SdpTemplate compile(final SessionDescription prototype)
+  {
+    // kept without any source text, so a materialized copy with unchanged values renders as the template does.
+    final SessionDescription detached = prototype.detached();
+    final Compiler compiler = new Compiler();
+    detached.writeTo(compiler);
+    return compiler.build(detached);
+  }
+
+  /**
+   * the number of ports {@link #render(byte[], int, long, long, String, int...)} expects, one for each m= line.
+   */
+
+  public int ports()
+  {
+    return this.ports;
+  }
+
+  /**
+   * the exact number of bytes the SDP takes with the given values.
+   */
+
+  public int length(final long sessionId, final long version, final String address, final int... ports)
+  {
+    this.checkPorts(ports);
+    final SdpWriter.LengthWriter w = new SdpWriter.LengthWriter();
+    this.fill(w, sessionId, version, address, ports);
+    return w.length;
+  }
+
+  /**
+   * renders the SDP with the given values into the array, starting at the given offset.
+   * 
+   * @return the number of bytes written.
+   * 
+   * @throws IndexOutOfBoundsException
+   *           if the SDP doesn't fit in the array, in which case nothing is written.
+   */
+
+  public int render(final byte[] buffer, final int offset, final long sessionId, final long version, final String address,
+      final int... ports)
+  {
+    final int length = this.length(sessionId, version, address, ports);
+    if (offset < 0 || offset + length > buffer.length)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    this.fill(new SdpWriter.ArrayWriter(buffer, offset), sessionId, version, address, ports);
+    return length;
+  }
+
+  /**
+   * renders the SDP with the given values at the buffer's position, advancing it past the SDP.
+   * 
+   * @return the number of bytes written.
+   * 
+   * @throws BufferOverflowException
+   *           if the SDP doesn't fit in the space remaining, in which case nothing is written.
+   */
+
+  public int render(final ByteBuffer buffer, final long sessionId, final long version, final String address, final int... ports)
+  {
+    final int length = this.length(sessionId, version, address, ports);
+    if (buffer.remaining() < length)
+    {
+      throw new BufferOverflowException();
+    }
+    this.fill(new SdpWriter.ByteBufferWriter(buffer), sessionId, version, address, ports);
+    return length;
+  }
+
+  /**
+   * renders the SDP with the given values into a new array of exactly the right size.
+   */
+
+  public byte[] render(final long sessionId, final long version, final String address, final int... ports)
+  {
+    final byte[] bytes = new byte[this.length(sessionId, version, address, ports)];
+    this.fill(new SdpWriter.ArrayWriter(bytes, 0), sessionId, version, address, ports);
+    return bytes;
+  }
+
+  /**
+   * the {@link SessionDescription} which {@link #render(long, long, String, int...)} renders with the same values.
+   */
+
+  public SessionDescription materialize(final long sessionId, final long version, final String address, final int... ports)
+  {
+
+    this.checkPorts(ports);
+
+    final SessionDescription sd = this.prototype;
+
+    final List<Media> medias = new ArrayList<>(ports.length);
+
+    for (int i = 0; i < ports.length; ++i)
+    {
+      final Media m = sd.media(i);
+      medias.add(m.withPort(ports[i]).withConnection(withAddress(m.getConnection(), address)));
+    }
+
+    return sd
+        .withOrigin((sd.origin() == null) ? null : sd.origin().withSessionId(sessionId).withVersion(version).withAddress(address))
+        .withConnection(withAddress(sd.connection(), address))
+        .withMedias(medias);
+
+  }
+
+  private static Connection withAddress(final Connection c, final String address)
+  {
+    // an empty address isn't a slot (see Connection#writeTo), so isn't filled in.
+    return (c == null || "".equals(c.address())) ? c : new Connection(c.networkType(), c.addressType(), address);
+  }
+
+  private void checkPorts(final int[] ports)
+  {
+    if (ports.length != this.ports)
+    {
+      throw new IllegalArgumentException("expected " + this.ports + " ports, got " + ports.length);
+    }
+  }
+
+  private void fill(final SdpWriter.ByteWriter w, final long sessionId, final long version, final String address, final int[] ports)
+  {
+
+    int port = 0;
+
+    for (int i = 0; i < this.slots.length; ++i)
+    {
+
+      final byte[] literal = this.literals[i];
+      w.put(literal, 0, literal.length);
+
+      switch (this.slots[i])
+      {
+        case SESSION_ID:
+          w.number(sessionId);
+          break;
+        case VERSION:
+          w.number(version);
+          break;
+        case ADDRESS:
+          w.text(address);
+          break;
+        case PORT:
+          w.number(ports[port++]);
+          break;
+      }
+
+    }
+
+    final byte[] last = this.literals[this.slots.length];
+    w.put(last, 0, last.length);
+
+  }
+
+  /**
+   * a writer which collects the fixed bytes, and notes where each slot goes.
+   */
+
+  private static final class Compiler extends SdpWriter.ByteWriter
+  {
+
+    private final List<byte[]> literals = new ArrayList<>();
+    private final List<Slot> slots = new ArrayList<>();
+
+    private byte[] buffer = new byte[512];
+    private int length;
+
+    @Override
+    boolean copiesSource()
+    {
+      return false;
+    }
+
+    @Override
+    SdpWriter write(final SerializedForm form, final Consumer<SdpWriter> renderer)
+    {
+      renderer.accept(this);
+      return this;
+    }
+
+    @Override
+    SdpWriter slot(final Slot slot, final long value)
+    {
+      return this.mark(slot);
+    }
+
+    @Override
+    SdpWriter slot(final Slot slot, final String value)
+    {
+      return this.mark(slot);
+    }
+
+    private SdpWriter mark(final Slot slot)
+    {
+      this.literals.add(Arrays.copyOf(this.buffer, this.length));
+      this.slots.add(slot);
+      this.length = 0;
+      return this;
+    }
+
+    @Override
+    void put(final byte b)
+    {
+      if (this.length == this.buffer.length)
+      {
+        this.buffer = Arrays.copyOf(this.buffer, this.length * 2);
+      }
+      this.buffer[this.length++] = b;
+    }
+
+    @Override
+    void put(final byte[] bytes, final int offset, final int length)
+    {
+      for (int i = 0; i < length; ++i)
+      {
+        this.put(bytes[offset + i]);
+      }
+    }
+
+    SdpTemplate build(final SessionDescription prototype)
+    {
+      this.literals.add(Arrays.copyOf(this.buffer, this.length));
+      return new SdpTemplate(prototype, this.literals.toArray(new byte[0][]), this.slots.toArray(new Slot[0]));
+    }
+
+  }
+
+}
@@ -0,0 +1,172 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Walks the whitespace separated fields of an SDP line by index.
+ * 
+ * Numeric fields (session ids, versions, ports) are parsed straight from the characters, and textual fields are exposed as index ranges,
+ * so nothing is allocated unless the caller asks for a string. An instance is reset for each line, so a parser only needs one.
+ * 
+ */
+
+final class SdpTokenizer
+{
+
+  private CharSequence text;
+  private int pos;
+  private int end;
+
+  // the current field.
+  private int start = -1;
+  private int stop = -1;
+
+  SdpTokenizer reset(final CharSequence text, final int start, final int end)
+  {
+    this.text = text;
+    this.pos = start;
+    this.end = end;
+    this.start = -1;
+    this.stop = -1;
+    return this;
+  }
+
+  /**
+   * true if there is another field on the line.
+   */
+
+  boolean hasNext()
+  {
+    this.pos = SdpUtils.skipWhitespace(this.text, this.pos, this.end);
+    return this.pos < this.end;
+  }
+
+  /**
+   * moves to the next field, failing if there isn't one (i.e, the line has too few fields).
+   */
+
+  SdpTokenizer next()
+  {
+    if (!this.hasNext())
+    {
+      throw SdpParseException.at(SdpParseError.MISSING_FIELD, "missing field in SDP line", this.text, this.pos);
+    }
+    this.start = this.pos;
+    this.stop = SdpUtils.nextWhitespace(this.text, this.pos, this.end);
+    this.pos = this.stop;
+    return this;
+  }
+
+  /**
+   * the start of the current field.
+   */
+
+  int start()
+  {
+    return this.start;
+  }
+
+  /**
+   * the end of the current field.
+   */
+
+  int end()
+  {
+    return this.stop;
+  }
+
+  /**
+   * the start of the remaining fields, after any whitespace.
+   */
+
+  int rest()
+  {
+    this.hasNext();
+    return this.pos;
+  }
+
+  /**
+   * the current field, as a string.
+   */
+
+  String value()
+  {
+    return SdpUtils.substring(this.text, this.start, this.stop);
+  }
+
+  /**
+   * moves to the next field, and parses it as an unsigned decimal number.
+   */
+
+  long nextLong()
+  {
+    this.next();
+    return this.parseLong(this.start, this.stop);
+  }
+
+  /**
+   * moves to the next field, and parses it as an unsigned decimal number.
+   */
+
+  int nextInt()
+  {
+    this.next();
+    return this.parseInt(this.start, this.stop);
+  }
+
+  /**
+   * parses [start, end) of the line as an unsigned decimal number.
+   */
+
+  long parseLong(final int start, final int end)
+  {
+    final long value = SdpUtils.parseUnsigned(this.text, start, end);
+    if (value == -1)
+    {
+      throw SdpParseException.at(SdpParseError.INVALID_NUMBER, "invalid number in SDP line", this.text, start);
+    }
+    return value;
+  }
+
+  /**
+   * parses [start, end) of the line as an unsigned decimal number that fits in an int.
+   */
+
+  int parseInt(final int start, final int end)
+  {
+    final long value = this.parseLong(start, end);
+    if (value > Integer.MAX_VALUE)
+    {
+      throw SdpParseException.at(SdpParseError.INVALID_NUMBER, "invalid number in SDP line", this.text, start);
+    }
+    return (int) value;
+  }
+
+  /**
+   * the index of the given character in the current field, or -1.
+   */
+
+  int indexOf(final char ch)
+  {
+    return SdpUtils.indexOf(this.text, ch, this.start, this.stop);
+  }
+
+}
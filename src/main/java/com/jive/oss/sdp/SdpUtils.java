@@ -23,6 +23,7 @@ package com.jive.oss.sdp;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -42,6 +43,136 @@ public class SdpUtils
     return Arrays.stream(val.toString().split(regex)).map(String::trim).filter(e -> !e.isEmpty()).collect(Collectors.toList());
   }
 
+  /**
+   * true if the sequence is empty or contains only whitespace (as per {@link String#trim()}).
+   */
+
+  public static boolean isBlank(final CharSequence val)
+  {
+    for (int i = 0; i < val.length(); ++i)
+    {
+      if (val.charAt(i) > ' ')
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * returns the index of the first non-whitespace character at or after pos, or end if there isn't one.
+   */
+
+  static int skipWhitespace(final CharSequence val, int pos, final int end)
+  {
+    while (pos < end && val.charAt(pos) <= ' ')
+    {
+      ++pos;
+    }
+    return pos;
+  }
+
+  /**
+   * returns the index of the first whitespace character at or after pos, or end if there isn't one.
+   */
+
+  static int nextWhitespace(final CharSequence val, int pos, final int end)
+  {
+    while (pos < end && val.charAt(pos) > ' ')
+    {
+      ++pos;
+    }
+    return pos;
+  }
+
+  /**
+   * returns the index of the first occurrence of ch in [pos, end), or -1.
+   */
+
+  static int indexOf(final CharSequence val, final char ch, int pos, final int end)
+  {
+    for (; pos < end; ++pos)
+    {
+      if (val.charAt(pos) == ch)
+      {
+        return pos;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * parses an unsigned decimal number from the characters in [start, end) without creating a String, returning -1 if the range is
+   * empty, contains anything other than digits, or overflows.
+   */
+
+  static long parseUnsigned(final CharSequence val, final int start, final int end)
+  {
+
+    if (start >= end)
+    {
+      return -1;
+    }
+
+    long result = 0;
+
+    for (int i = start; i < end; ++i)
+    {
+
+      final int digit = val.charAt(i) - '0';
+
+      if (digit < 0 || digit > 9)
+      {
+        return -1;
+      }
+
+      if (result > (Long.MAX_VALUE - digit) / 10)
+      {
+        return -1;
+      }
+
+      result = (result * 10) + digit;
+
+    }
+
+    return result;
+
+  }
+
+  /**
+   * returns [start, end) of the text as a string, avoiding an intermediate view where the text type allows it.
+   */
+
+  static String substring(final CharSequence text, final int start, final int end)
+  {
+    if (text instanceof String)
+    {
+      return ((String) text).substring(start, end);
+    }
+    if (text instanceof ByteCharSequence)
+    {
+      return ((ByteCharSequence) text).toString(start, end);
+    }
+    return text.subSequence(start, end).toString();
+  }
+
+  /**
+   * returns a view of the given absolute range of the buffer, reading heap buffers through their backing array.
+   */
+
+  static CharSequence wrap(final ByteBuffer buffer, final int offset, final int length)
+  {
+    if (offset < 0 || length < 0 || offset + length > buffer.limit())
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    if (buffer.hasArray())
+    {
+      return new ByteCharSequence(buffer.array(), buffer.arrayOffset() + offset, length);
+    }
+    return new ByteBufferCharSequence(buffer, offset, length);
+  }
+
   public static String getAddressType(final InetAddress addr)
   {
     if (addr instanceof Inet4Address)
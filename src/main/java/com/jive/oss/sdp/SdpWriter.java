@@ -0,0 +1,532 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Serializes a {@link SessionDescription} straight into a byte[], {@link ByteBuffer} or {@link OutputStream}.
+ * 
+ * Text is encoded as UTF-8 as it is written, and numbers (ports, session ids, payload types) are written as ASCII digits, so no
+ * intermediate strings are created. Sections which are unchanged since they were parsed are copied from the original text. An instance is
+ * rendered straight into the destination the first time it is written, and its bytes are kept once it is written again, so further
+ * writes of the same instance (e.g, for retransmissions) are a copy.
+ * 
+ * The writers themselves are internal, so this can't be extended.
+ * 
+ */
+
+public abstract class SdpWriter
+{
+
+  // scratch space for the digits of a number.
+  private final char[] digits = new char[20];
+
+  private SdpWriter()
+  {
+  }
+
+  /**
+   * writes the SDP at the buffer's position, advancing it past the SDP.
+   * 
+   * @return the number of bytes written.
+   * 
+   * @throws BufferOverflowException
+   *           if the SDP doesn't fit in the space remaining, in which case nothing is written.
+   */
+
+  public static int write(final SessionDescription sdp, final ByteBuffer buffer)
+  {
+    final int length = sdp.serializedLength();
+    if (buffer.remaining() < length)
+    {
+      throw new BufferOverflowException();
+    }
+    sdp.writeTo(new ByteBufferWriter(buffer));
+    return length;
+  }
+
+  /**
+   * writes the SDP into the array, starting at the given offset.
+   * 
+   * @return the number of bytes written.
+   * 
+   * @throws IndexOutOfBoundsException
+   *           if the SDP doesn't fit in the array, in which case nothing is written.
+   */
+
+  public static int write(final SessionDescription sdp, final byte[] buffer, final int offset)
+  {
+    final int length = sdp.serializedLength();
+    if (offset < 0 || offset + length > buffer.length)
+    {
+      throw new IndexOutOfBoundsException();
+    }
+    sdp.writeTo(new ArrayWriter(buffer, offset));
+    return length;
+  }
+
+  /**
+   * writes the SDP to the stream, in chunks. The stream is not flushed.
+   * 
+   * @return the number of bytes written.
+   */
+
+  public static int write(final SessionDescription sdp, final OutputStream out) throws IOException
+  {
+    final StreamWriter writer = new StreamWriter(out);
+    try
+    {
+      sdp.writeTo(writer);
+      writer.flush();
+    }
+    catch (final UncheckedIOException ex)
+    {
+      throw ex.getCause();
+    }
+    return writer.written;
+  }
+
+  /**
+   * a writer that appends the SDP to a {@link StringBuilder}, used by toString().
+   */
+
+  static SdpWriter of(final StringBuilder sb)
+  {
+    return new StringWriter(sb);
+  }
+
+  /**
+   * renders into a new array of exactly the right size.
+   */
+
+  static byte[] render(final Consumer<SdpWriter> renderer, final int length)
+  {
+    final byte[] bytes = new byte[length];
+    renderer.accept(new ArrayWriter(bytes, 0));
+    return bytes;
+  }
+
+  /**
+   * the number of bytes the renderer writes, counted without writing them anywhere.
+   */
+
+  static int length(final Consumer<SdpWriter> renderer)
+  {
+    final LengthWriter writer = new LengthWriter();
+    renderer.accept(writer);
+    return writer.length;
+  }
+
+  /**
+   * writes the memoized rendering of a {@link SessionDescription} or {@link Media}, rendering it first if needed.
+   */
+
+  abstract SdpWriter write(SerializedForm form, Consumer<SdpWriter> renderer);
+
+  /**
+   * writes a single ASCII character.
+   */
+
+  abstract SdpWriter write(char ch);
+
+  /**
+   * writes [start, end) of the text.
+   */
+
+  abstract SdpWriter write(CharSequence text, int start, int end);
+
+  /**
+   * writes a string that contains only ASCII characters.
+   */
+
+  SdpWriter ascii(final String value)
+  {
+    for (int i = 0; i < value.length(); ++i)
+    {
+      this.write(value.charAt(i));
+    }
+    return this;
+  }
+
+  SdpWriter text(final String value)
+  {
+    if (value == null)
+    {
+      return this.ascii("null");
+    }
+    return this.write(value, 0, value.length());
+  }
+
+  SdpWriter number(final long value)
+  {
+
+    if (value < 0)
+    {
+      this.write('-');
+    }
+
+    int pos = this.digits.length;
+    long remaining = value;
+
+    do
+    {
+      // works for Long.MIN_VALUE too, as the remainder is negated rather than the value.
+      this.digits[--pos] = (char) ('0' + Math.abs(remaining % 10));
+      remaining /= 10;
+    }
+    while (remaining != 0);
+
+    while (pos < this.digits.length)
+    {
+      this.write(this.digits[pos++]);
+    }
+
+    return this;
+
+  }
+
+  /**
+   * writes a value which can be filled in by an {@link SdpTemplate}.
+   */
+
+  SdpWriter slot(final SdpTemplate.Slot slot, final long value)
+  {
+    return this.number(value);
+  }
+
+  /**
+   * writes a value which can be filled in by an {@link SdpTemplate}.
+   */
+
+  SdpWriter slot(final SdpTemplate.Slot slot, final String value)
+  {
+    return this.text(value);
+  }
+
+  /**
+   * false if instances should be rendered from the model even when they have their original text.
+   */
+
+  boolean copiesSource()
+  {
+    return true;
+  }
+
+  SdpWriter eol()
+  {
+    return this.write('\r').write('\n');
+  }
+
+  /**
+   * writes each of the lines whose type is (or, if include is false, isn't) one of the given types. Returns true if any were written.
+   */
+
+  boolean lines(final List<String> lines, final String types, final boolean include)
+  {
+    boolean written = false;
+    for (final String line : lines)
+    {
+      if ((types.indexOf(line.charAt(0)) != -1) == include)
+      {
+        this.text(line).eol();
+        written = true;
+      }
+    }
+    return written;
+  }
+
+  private static final class StringWriter extends SdpWriter
+  {
+
+    private final StringBuilder sb;
+
+    StringWriter(final StringBuilder sb)
+    {
+      this.sb = sb;
+    }
+
+    @Override
+    SdpWriter write(final SerializedForm form, final Consumer<SdpWriter> renderer)
+    {
+      this.sb.append(form.string(renderer));
+      return this;
+    }
+
+    @Override
+    SdpWriter write(final char ch)
+    {
+      this.sb.append(ch);
+      return this;
+    }
+
+    @Override
+    SdpWriter write(final CharSequence text, final int start, final int end)
+    {
+      if (text instanceof String)
+      {
+        this.sb.append(text, start, end);
+      }
+      else
+      {
+        this.sb.append(SdpUtils.substring(text, start, end));
+      }
+      return this;
+    }
+
+  }
+
+  /**
+   * encodes text as UTF-8. Text which is a view of bytes is copied as is, as it is already encoded.
+   */
+
+  abstract static class ByteWriter extends SdpWriter
+  {
+
+    abstract void put(byte b);
+
+    abstract void put(byte[] bytes, int offset, int length);
+
+    @Override
+    SdpWriter write(final SerializedForm form, final Consumer<SdpWriter> renderer)
+    {
+      final byte[] bytes = form.bytesToWrite(renderer);
+      if (bytes == null)
+      {
+        renderer.accept(this);
+      }
+      else
+      {
+        this.put(bytes, 0, bytes.length);
+      }
+      return this;
+    }
+
+    @Override
+    SdpWriter write(final char ch)
+    {
+      this.put((byte) ch);
+      return this;
+    }
+
+    @Override
+    SdpWriter write(final CharSequence text, final int start, final int end)
+    {
+
+      if (text instanceof ByteCharSequence)
+      {
+        final ByteCharSequence bytes = (ByteCharSequence) text;
+        this.put(bytes.array(), bytes.arrayOffset() + start, end - start);
+        return this;
+      }
+
+      if (text instanceof ByteBufferCharSequence)
+      {
+        for (int i = start; i < end; ++i)
+        {
+          this.put((byte) text.charAt(i));
+        }
+        return this;
+      }
+
+      for (int i = start; i < end; ++i)
+      {
+
+        final char ch = text.charAt(i);
+
+        if (ch < 0x80)
+        {
+          this.put((byte) ch);
+        }
+        else if (ch < 0x800)
+        {
+          this.put((byte) (0xC0 | (ch >> 6)));
+          this.put((byte) (0x80 | (ch & 0x3F)));
+        }
+        else if (Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1)))
+        {
+          final int cp = Character.toCodePoint(ch, text.charAt(++i));
+          this.put((byte) (0xF0 | (cp >> 18)));
+          this.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+          this.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+          this.put((byte) (0x80 | (cp & 0x3F)));
+        }
+        else if (Character.isSurrogate(ch))
+        {
+          // unpaired, as String.getBytes() does.
+          this.put((byte) '?');
+        }
+        else
+        {
+          this.put((byte) (0xE0 | (ch >> 12)));
+          this.put((byte) (0x80 | ((ch >> 6) & 0x3F)));
+          this.put((byte) (0x80 | (ch & 0x3F)));
+        }
+
+      }
+
+      return this;
+
+    }
+
+  }
+
+  static final class LengthWriter extends ByteWriter
+  {
+
+    int length;
+
+    @Override
+    SdpWriter write(final SerializedForm form, final Consumer<SdpWriter> renderer)
+    {
+      this.length += form.length(renderer);
+      return this;
+    }
+
+    @Override
+    void put(final byte b)
+    {
+      this.length++;
+    }
+
+    @Override
+    void put(final byte[] bytes, final int offset, final int length)
+    {
+      this.length += length;
+    }
+
+  }
+
+  static final class ByteBufferWriter extends ByteWriter
+  {
+
+    private final ByteBuffer buffer;
+
+    ByteBufferWriter(final ByteBuffer buffer)
+    {
+      this.buffer = buffer;
+    }
+
+    @Override
+    void put(final byte b)
+    {
+      this.buffer.put(b);
+    }
+
+    @Override
+    void put(final byte[] bytes, final int offset, final int length)
+    {
+      this.buffer.put(bytes, offset, length);
+    }
+
+  }
+
+  static final class ArrayWriter extends ByteWriter
+  {
+
+    private final byte[] buffer;
+    private int position;
+
+    ArrayWriter(final byte[] buffer, final int offset)
+    {
+      this.buffer = buffer;
+      this.position = offset;
+    }
+
+    @Override
+    void put(final byte b)
+    {
+      this.buffer[this.position++] = b;
+    }
+
+    @Override
+    void put(final byte[] bytes, final int offset, final int length)
+    {
+      System.arraycopy(bytes, offset, this.buffer, this.position, length);
+      this.position += length;
+    }
+
+  }
+
+  private static final class StreamWriter extends ByteWriter
+  {
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[1024];
+    private int length;
+    private int written;
+
+    StreamWriter(final OutputStream out)
+    {
+      this.out = out;
+    }
+
+    @Override
+    void put(final byte b)
+    {
+      if (this.length == this.buffer.length)
+      {
+        this.flush();
+      }
+      this.buffer[this.length++] = b;
+      this.written++;
+    }
+
+    @Override
+    void put(final byte[] bytes, final int offset, final int length)
+    {
+      this.flush();
+      try
+      {
+        this.out.write(bytes, offset, length);
+      }
+      catch (final IOException ex)
+      {
+        throw new UncheckedIOException(ex);
+      }
+      this.written += length;
+    }
+
+    void flush()
+    {
+      if (this.length > 0)
+      {
+        try
+        {
+          this.out.write(this.buffer, 0, this.length);
+        }
+        catch (final IOException ex)
+        {
+          throw new UncheckedIOException(ex);
+        }
+        this.length = 0;
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,358 @@
+package com.jive.oss.sdp;
+
+/*
+ * #%L
+ * sdp
+ * %%
+ * Copyright (C) 2015 Jive Communications, Inc
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * The serialized form of a {@link SessionDescription} or {@link Media}.
+ * 
+ * Both are immutable, so each is rendered at most once, on first use, and the String (for toString()) and UTF-8 bytes (for
+ * {@link SdpWriter}) are kept. The first time an instance is written as bytes, it is rendered straight into the destination rather than
+ * kept, unless it is written again. A {@link SessionDescription} built from {@link Media} instances that have already been rendered reuses
+ * their renderings.
+ * 
+ * An instance created by the parser also keeps the span of the original text it was read from. While the instance is unmodified (withers
+ * always create a new instance), rendering it is a copy of these lines rather than a re-render of the model, so SDP that passes through
+ * unchanged comes out exactly as it went in. Line endings are normalized to CRLF, and trailing whitespace and empty lines are dropped, as
+ * the parser ignores them anyway.
+ * 
+ * An instance derived from another by changing a single line (e.g, {@link SessionDescription#newVersion()}) which has already been
+ * rendered is spliced from that rendering instead: the old line is replaced with the new one, and nothing else is rendered again.
+ * 
+ */
+
+final class SerializedForm
+{
+
+  // set once by the parser, before the owning instance is handed out.
+  private volatile CharSequence text;
+  private int start;
+  private int end;
+
+  private volatile String string;
+  private volatile byte[] bytes;
+
+  // the length of the bytes, or -1 if not yet known. Racy, as it is the same whichever thread works it out.
+  private int length = -1;
+
+  // the rendering this one differs from by one line, until this one is rendered.
+  private volatile Splice splice;
+
+  // true once this has been written as bytes without keeping them.
+  private volatile boolean written;
+
+  void set(final CharSequence text, final int start, final int end)
+  {
+    this.start = start;
+    this.end = end;
+    this.text = text;
+  }
+
+  boolean hasSource()
+  {
+    return this.text != null;
+  }
+
+  /**
+   * true if this has been rendered in either form.
+   */
+
+  boolean isRendered()
+  {
+    return this.string != null || this.bytes != null;
+  }
+
+  /**
+   * notes that this instance's rendering is the same as the (already rendered) base's, except for the given line. Must be called before
+   * the owning instance is handed out.
+   */
+
+  void derive(final SerializedForm base, final String line, final String replacement)
+  {
+    final byte[] bytes = base.bytes;
+    final String string = base.string;
+    if (bytes != null || string != null)
+    {
+      this.splice = new Splice((bytes == null) ? string : null, bytes, line, replacement);
+    }
+  }
+
+  /**
+   * the rendering as a String, rendering it if this is the first time it has been asked for.
+   */
+
+  String string(final Consumer<SdpWriter> renderer)
+  {
+    String string = this.string;
+    if (string == null)
+    {
+      synchronized (this)
+      {
+        string = this.string;
+        if (string == null)
+        {
+          final byte[] bytes = this.bytes;
+          final Splice splice = this.splice;
+          if (bytes != null)
+          {
+            string = new String(bytes, StandardCharsets.UTF_8);
+          }
+          else if (splice != null)
+          {
+            string = splice.string();
+          }
+          if (string == null)
+          {
+            final StringBuilder sb = new StringBuilder();
+            renderer.accept(SdpWriter.of(sb));
+            string = sb.toString();
+          }
+          this.string = string;
+          this.splice = null;
+        }
+      }
+    }
+    return string;
+  }
+
+  /**
+   * the rendering as UTF-8 bytes, rendering it if this is the first time it has been asked for. The array must not be modified.
+   */
+
+  byte[] bytes(final Consumer<SdpWriter> renderer)
+  {
+    byte[] bytes = this.bytes;
+    if (bytes == null)
+    {
+      synchronized (this)
+      {
+        bytes = this.bytes;
+        if (bytes == null)
+        {
+          final String string = this.string;
+          final Splice splice = this.splice;
+          if (string != null)
+          {
+            bytes = string.getBytes(StandardCharsets.UTF_8);
+          }
+          else if (splice != null)
+          {
+            bytes = splice.bytes();
+          }
+          if (bytes == null)
+          {
+            bytes = SdpWriter.render(renderer, this.length(renderer));
+          }
+          this.bytes = bytes;
+          this.splice = null;
+        }
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * the bytes to write, if they are kept already or are cheap to work out (from the String, or a splice), or if this has been written
+   * before, so is likely to be written again (e.g, retransmissions). Otherwise null, and the caller should render straight into its
+   * destination.
+   */
+
+  byte[] bytesToWrite(final Consumer<SdpWriter> renderer)
+  {
+    if (this.bytes != null || this.string != null || this.splice != null || this.written)
+    {
+      return this.bytes(renderer);
+    }
+    this.written = true;
+    return null;
+  }
+
+  /**
+   * the number of bytes in the UTF-8 rendering, counted without rendering it if it hasn't been already.
+   */
+
+  int length(final Consumer<SdpWriter> renderer)
+  {
+    final byte[] bytes = this.bytes;
+    if (bytes != null)
+    {
+      return bytes.length;
+    }
+    int length = this.length;
+    if (length == -1)
+    {
+      final String string = this.string;
+      if (string == null && this.splice != null)
+      {
+        // splicing is cheaper than counting.
+        return this.bytes(renderer).length;
+      }
+      this.length = length = (string != null) ? SdpWriter.length(w -> w.text(string)) : SdpWriter.length(renderer);
+    }
+    return length;
+  }
+
+  /**
+   * writes the lines of the source span, each terminated with CRLF.
+   */
+
+  void writeSource(final SdpWriter w)
+  {
+
+    final CharSequence text = this.text;
+
+    int pos = this.start;
+
+    while (pos < this.end)
+    {
+
+      int eol = SdpUtils.indexOf(text, '\n', pos, this.end);
+
+      if (eol == -1)
+      {
+        eol = this.end;
+      }
+
+      int last = eol;
+
+      while (last > pos && text.charAt(last - 1) <= ' ')
+      {
+        --last;
+      }
+
+      if (last > pos)
+      {
+        w.write(text, pos, last).eol();
+      }
+
+      pos = eol + 1;
+
+    }
+
+  }
+
+  /**
+   * a rendering, and the line in it to replace. A line is matched in full, and only the first match is replaced. The line is never the
+   * first one (which is v= or m=), so it is always preceded by a LF.
+   */
+
+  private static final class Splice
+  {
+
+    private final String string;
+    private final byte[] bytes;
+    private final String line;
+    private final String replacement;
+
+    Splice(final String string, final byte[] bytes, final String line, final String replacement)
+    {
+      this.string = string;
+      this.bytes = bytes;
+      this.line = line;
+      this.replacement = replacement;
+    }
+
+    /**
+     * the spliced rendering, or null if the line isn't there.
+     */
+
+    String string()
+    {
+
+      if (this.string == null)
+      {
+        final byte[] bytes = this.bytes();
+        return (bytes == null) ? null : new String(bytes, StandardCharsets.UTF_8);
+      }
+
+      final int idx = this.string.indexOf("\n" + this.line + "\r\n");
+
+      if (idx == -1)
+      {
+        return null;
+      }
+
+      return new StringBuilder(this.string.length() - this.line.length() + this.replacement.length())
+          .append(this.string, 0, idx + 1)
+          .append(this.replacement)
+          .append(this.string, idx + 1 + this.line.length(), this.string.length())
+          .toString();
+
+    }
+
+    /**
+     * the spliced rendering, or null if the line isn't there.
+     */
+
+    byte[] bytes()
+    {
+
+      if (this.bytes == null)
+      {
+        final String string = this.string();
+        return (string == null) ? null : string.getBytes(StandardCharsets.UTF_8);
+      }
+
+      final byte[] find = ("\n" + this.line + "\r\n").getBytes(StandardCharsets.UTF_8);
+      final byte[] replace = this.replacement.getBytes(StandardCharsets.UTF_8);
+
+      final int idx = indexOf(this.bytes, find);
+
+      if (idx == -1)
+      {
+        return null;
+      }
+
+      // the LF before the line, and the CRLF after it, are kept.
+      final int start = idx + 1;
+      final int end = idx + find.length - 2;
+
+      final byte[] spliced = new byte[this.bytes.length - (end - start) + replace.length];
+
+      System.arraycopy(this.bytes, 0, spliced, 0, start);
+      System.arraycopy(replace, 0, spliced, start, replace.length);
+      System.arraycopy(this.bytes, end, spliced, start + replace.length, this.bytes.length - end);
+
+      return spliced;
+
+    }
+
+    private static int indexOf(final byte[] bytes, final byte[] find)
+    {
+      outer: for (int i = 0; i <= bytes.length - find.length; ++i)
+      {
+        for (int j = 0; j < find.length; ++j)
+        {
+          if (bytes[i + j] != find[j])
+          {
+            continue outer;
+          }
+        }
+        return i;
+      }
+      return -1;
+    }
+
+  }
+
+}
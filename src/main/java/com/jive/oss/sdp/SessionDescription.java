@@ -20,7 +20,7 @@ package com.jive.oss.sdp;
  * #L%
  */
 
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -30,7 +30,6 @@ import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import lombok.Builder;
 import lombok.EqualsAndHashCode;
@@ -64,6 +63,37 @@ public class SessionDescription
   @Singular
   private final List<String> unknowns;
 
+  // the rendered form, and the text this was parsed from if it is still a faithful copy of it.
+  private final transient SerializedForm serialized = new SerializedForm();
+
+  // the positions of the attributes by key, built on first use. The attributes are a snapshot, and withers create a new instance, so it
+  // never goes stale.
+  private final transient Decoded decoded = new Decoded();
+
+  private static final class Decoded
+  {
+    volatile AttributeIndex index;
+  }
+
+  // used by the builder and withers. lists are held as read-only snapshots, as the rendering and index are memoized.
+  SessionDescription(
+      final Origin origin,
+      final Info info,
+      final Connection connection,
+      final List<Attribute> attributes,
+      final List<Media> medias,
+      final String subject,
+      final List<String> unknowns)
+  {
+    this.origin = origin;
+    this.info = info;
+    this.connection = connection;
+    this.attributes = SdpLists.snapshot(attributes);
+    this.medias = SdpLists.snapshot(medias);
+    this.subject = subject;
+    this.unknowns = SdpLists.snapshot(unknowns);
+  }
+
   public Origin origin()
   {
     return this.origin;
@@ -79,27 +109,34 @@ public class SessionDescription
     return this.connection;
   }
 
+  /**
+   * the session level attributes, as a read-only view.
+   */
+
   public List<Attribute> attributes()
   {
-    if (this.attributes == null)
-    {
-      return Collections.emptyList();
-    }
-    return new ArrayList<>(this.attributes);
+    return SdpLists.view(this.attributes);
   }
 
   public boolean hasAttribute(final String key)
   {
-    return this.attributes.stream().filter(a -> key.equals(a.getKey())).findAny().isPresent();
+    return this.index().contains(key);
+  }
+
+  private AttributeIndex index()
+  {
+    AttributeIndex index = this.decoded.index;
+    if (index == null)
+    {
+      index = AttributeIndex.of(this.attributes);
+      this.decoded.index = index;
+    }
+    return index;
   }
 
   public SessionDescription withAttribute(final Attribute attr)
   {
-    return this.withAttributes(
-        Stream.concat(
-            this.attributes().stream(),
-            Stream.of(attr))
-            .collect(Collectors.toList()));
+    return this.withAttributes(SdpLists.append(this.attributes, attr));
   }
 
   public SessionDescription withoutAttribute(final String key)
@@ -110,18 +147,17 @@ public class SessionDescription
   public SessionDescription withoutAttribute(final String key, final String value)
   {
     return this.withAttributes(
-        this.attributes().stream()
-            .filter((attr) -> !(key.equals(attr.getKey())
-                && (value == null || value.equals(attr.getValue()))))
-            .collect(Collectors.toList()));
+        SdpLists.removeIf(this.attributes, (attr) -> key.equals(attr.getKey())
+            && (value == null || value.equals(attr.getValue()))));
   }
 
+  /**
+   * the media sections, as a read-only view.
+   */
+
   public List<Media> medias()
   {
-    if (this.medias == null)
-      return Collections.emptyList();
-
-    return new ArrayList<>(medias);
+    return SdpLists.view(this.medias);
   }
 
   public List<Media> medias(Predicate<Media> pred)
@@ -133,16 +169,54 @@ public class SessionDescription
     return this.medias.stream().filter(pred).collect(Collectors.toList());
   }
 
+  /**
+   * A copy with the origin version incremented, e.g for a re-offer.
+   * 
+   * If this instance has already been rendered, the copy's rendering is this one with the version in the o= line replaced.
+   */
+
   public SessionDescription newVersion()
   {
-    return this.withOrigin(this.origin.withVersion(this.origin.version() + 1));
+    final SessionDescription next = this.withOrigin(this.origin.withVersion(this.origin.version() + 1));
+    if (this.serialized.isRendered())
+    {
+      next.serialized.derive(this.serialized, "o=" + this.origin, "o=" + next.origin);
+    }
+    return next;
   }
 
+  /**
+   * A copy with the given session level direction attribute. An existing direction attribute is replaced in place (in which case the
+   * copy's rendering is spliced from this one's, if it has been rendered), otherwise it is added at the end.
+   */
+
   public SessionDescription withDirection(final SdpDirection d)
   {
-    final List<Attribute> attrs = this.attributes.stream().filter(a -> !Media.isDirection(a)).collect(Collectors.toList());
-    attrs.add(new Attribute(d.toString().toLowerCase(), null));
-    return this.withAttributes(attrs);
+
+    final Attribute flag = SdpAttributeKey.of(d).flag();
+    final int idx = Media.directionIndex(this.attributes);
+
+    if (idx == -1)
+    {
+      return this.withAttributes(SdpLists.append(SdpLists.removeIf(this.attributes, Media::isDirection), flag));
+    }
+
+    final Attribute previous = this.attributes.get(idx);
+
+    final SessionDescription next = this.withAttributes(SdpLists.set(this.attributes, idx, flag));
+
+    if (next == this)
+    {
+      return this;
+    }
+
+    if (this.serialized.isRendered())
+    {
+      next.serialized.derive(this.serialized, "a=" + previous, "a=" + flag);
+    }
+
+    return next;
+
   }
 
   public SessionDescription withoutConnection()
@@ -152,83 +226,429 @@ public class SessionDescription
 
   public SessionDescription withoutDirection()
   {
-    final List<Attribute> attrs = this.attributes.stream().filter(a -> !Media.isDirection(a)).collect(Collectors.toList());
-    return this.withAttributes(attrs);
+    return this.withAttributes(SdpLists.removeIf(this.attributes, Media::isDirection));
   }
 
   public Optional<SdpDirection> direction()
   {
+    final int idx = this.index().direction();
+    return (idx == -1) ? Optional.empty() : Optional.of(Media.direction(this.attributes.get(idx)));
+  }
 
-    for (final Attribute a : this.attributes())
-    {
-      switch (a.getKey())
-      {
-        case "sendonly":
-          return Optional.of(SdpDirection.SendOnly);
-        case "recvonly":
-          return Optional.of(SdpDirection.RecvOnly);
-        case "inactive":
-          return Optional.of(SdpDirection.Inactive);
-        case "sendrecv":
-          return Optional.of(SdpDirection.SendRecv);
-        default:
-          break;
-      }
-    }
+  /**
+   * lines which aren't otherwise modeled (e.g, "b=AS:64", "t=0 0"), in the order they appeared.
+   */
+
+  public List<String> unknowns()
+  {
+    return this.unknowns;
+  }
+
+  SerializedForm serialized()
+  {
+    return this.serialized;
+  }
+
+  /**
+   * a copy which is rendered from its model, rather than sharing this one's (or its media's) source text or rendering.
+   */
+
+  SessionDescription detached()
+  {
+    return new SessionDescription(
+        this.origin,
+        this.info,
+        this.connection,
+        this.attributes,
+        (this.medias == null) ? null : SdpLists.adopt(this.medias.stream().map(Media::detached).collect(Collectors.toList())),
+        this.subject,
+        this.unknowns);
+  }
+
+  // the fields as held, for SdpEditor.
+
+  String subject()
+  {
+    return this.subject;
+  }
+
+  List<Attribute> attributeList()
+  {
+    return this.attributes;
+  }
+
+  List<Media> mediaList()
+  {
+    return this.medias;
+  }
+
+  /**
+   * A mutable editor for making a batch of changes to a copy of this instance, which is returned by {@link SdpEditor#freeze()}. Cheaper
+   * than chaining withers when making several changes, as the model is copied once rather than for each change.
+   */
 
-    return Optional.empty();
+  public SdpEditor edit()
+  {
+    return new SdpEditor(this);
   }
 
+  /**
+   * The SDP text. Rendered on first use, after which the same String is returned.
+   */
+
   @Override
   public String toString()
   {
-    final StringBuilder sb = new StringBuilder();
+    return this.serialized.string(this::render);
+  }
+
+  void writeTo(final SdpWriter w)
+  {
+    w.write(this.serialized, this::render);
+  }
+
+  /**
+   * The exact number of bytes in the UTF-8 encoding of the SDP (as written by {@link SdpWriter}), worked out from the model without
+   * rendering it.
+   */
+
+  public int serializedLength()
+  {
+    return this.serialized.length(this::render);
+  }
+
+  private void render(final SdpWriter w)
+  {
+
+    if (this.serialized.hasSource() && w.copiesSource())
+    {
+      this.serialized.writeSource(w);
+      return;
+    }
+
+    w.ascii("v=0").eol();
 
-    sb.append("v=0").append("\r\n");
     if (this.origin != null)
     {
-      sb.append("o=").append(this.origin).append("\r\n");
+      this.origin.writeTo(w.ascii("o=")).eol();
     }
 
-    if (subject != null)
+    if (this.subject != null)
     {
-      sb.append("s=").append(subject).append("\r\n");
+      w.ascii("s=").text(this.subject).eol();
     }
     else
     {
-      sb.append("s=-").append("\r\n");
+      w.ascii("s=-").eol();
     }
 
+    // other lines go where RFC 4566 puts them.
+    w.lines(this.unknowns, "iuep", true);
+
     if (this.connection != null)
     {
-      sb.append("c=").append(this.connection).append("\r\n");
+      this.connection.writeTo(w.ascii("c=")).eol();
     }
-    sb.append("t=0 0").append("\r\n");
 
-    for (final Attribute a : this.attributes())
+    w.lines(this.unknowns, "b", true);
+
+    if (!w.lines(this.unknowns, "tr", true))
     {
-      sb.append("a=").append(a).append("\r\n");
+      w.ascii("t=0 0").eol();
     }
 
-    this.medias().forEach(sb::append);
+    w.lines(this.unknowns, "iuepbtr", false);
+
+    if (this.attributes != null)
+    {
+      for (final Attribute a : this.attributes)
+      {
+        a.writeTo(w.ascii("a=")).eol();
+      }
+    }
+
+    if (this.medias != null)
+    {
+      for (final Media m : this.medias)
+      {
+        m.writeTo(w);
+      }
+    }
 
-    return sb.toString();
   }
 
+  /**
+   * Parses the SDP directly from its (UTF-8) bytes. The structure is scanned in place, and only the fields kept in the model are decoded
+   * into strings.
+   */
+
   public static SessionDescription parse(final byte[] sdp)
   {
-    return parse(new String(sdp, StandardCharsets.UTF_8));
+    return parse(new ByteCharSequence(sdp), SdpParserOptions.DEFAULT);
+  }
+
+  /**
+   * As {@link #parse(byte[])}, failing if the SDP exceeds any of the given limits.
+   */
+
+  public static SessionDescription parse(final byte[] sdp, final SdpParserOptions options)
+  {
+    return parse(new ByteCharSequence(sdp), options);
+  }
+
+  /**
+   * Parses the SDP between the buffer's position and its limit.
+   * 
+   * Heap and direct buffers are both read in place, and the buffer's position is not changed.
+   */
+
+  public static SessionDescription parse(final ByteBuffer sdp)
+  {
+    return parse(sdp, sdp.position(), sdp.remaining());
+  }
+
+  /**
+   * Parses the SDP held in the given absolute range of the buffer, without changing its position.
+   */
+
+  public static SessionDescription parse(final ByteBuffer sdp, final int offset, final int length)
+  {
+    return parse(SdpUtils.wrap(sdp, offset, length), SdpParserOptions.DEFAULT);
+  }
+
+  /**
+   * As {@link #parse(ByteBuffer)}, failing if the SDP exceeds any of the given limits.
+   */
+
+  public static SessionDescription parse(final ByteBuffer sdp, final SdpParserOptions options)
+  {
+    return parse(SdpUtils.wrap(sdp, sdp.position(), sdp.remaining()), options);
   }
 
   public static SessionDescription parse(final String sdp)
   {
-    if (sdp.trim().length() == 0)
+    return parse(sdp, SdpParserOptions.DEFAULT);
+  }
+
+  /**
+   * As {@link #parse(String)}, failing with an {@link SdpParseException} if the SDP exceeds any of the given limits.
+   */
+
+  public static SessionDescription parse(final String sdp, final SdpParserOptions options)
+  {
+    return parse((CharSequence) sdp, options);
+  }
+
+  /**
+   * Parses the SDP, returning the reason it is malformed rather than throwing.
+   * 
+   * Intended for untrusted input, where rejecting bad SDP needs to be cheap: errors are reported without capturing a stack trace. Only
+   * an {@link SdpParseException} is reported as a failure; anything else thrown while parsing is a bug, so is not caught.
+   */
+
+  public static SdpParseResult tryParse(final CharSequence sdp)
+  {
+    return tryParse(sdp, SdpParserOptions.DEFAULT);
+  }
+
+  /**
+   * As {@link #tryParse(CharSequence)}, failing if the SDP exceeds any of the given limits.
+   */
+
+  public static SdpParseResult tryParse(final CharSequence sdp, final SdpParserOptions options)
+  {
+    try
+    {
+      return SdpParseResult.success(parse(sdp, options));
+    }
+    catch (final SdpParseException ex)
+    {
+      // anything else is a bug rather than bad input, so isn't hidden in a result.
+      return SdpParseResult.failure(ex);
+    }
+  }
+
+  /**
+   * As {@link #tryParse(CharSequence)}, reading the bytes in place.
+   */
+
+  public static SdpParseResult tryParse(final byte[] sdp)
+  {
+    return tryParse(new ByteCharSequence(sdp));
+  }
+
+  /**
+   * As {@link #tryParse(CharSequence, SdpParserOptions)}, reading the bytes in place.
+   */
+
+  public static SdpParseResult tryParse(final byte[] sdp, final SdpParserOptions options)
+  {
+    return tryParse(new ByteCharSequence(sdp), options);
+  }
+
+  /**
+   * As {@link #tryParse(CharSequence)}, reading the bytes between the buffer's position and limit in place, without changing its position.
+   */
+
+  public static SdpParseResult tryParse(final ByteBuffer sdp)
+  {
+    return tryParse(SdpUtils.wrap(sdp, sdp.position(), sdp.remaining()));
+  }
+
+  /**
+   * Reads just the session id and version from the o= line, without parsing the rest of the SDP.
+   */
+
+  public static Optional<OriginVersion> peekOrigin(final CharSequence sdp)
+  {
+    return Optional.ofNullable(SdpParser.peekOrigin(new SdpReader(sdp)));
+  }
+
+  /**
+   * As {@link #peekOrigin(CharSequence)}, reading the bytes in place.
+   */
+
+  public static Optional<OriginVersion> peekOrigin(final byte[] sdp)
+  {
+    return peekOrigin(new ByteCharSequence(sdp));
+  }
+
+  /**
+   * As {@link #peekOrigin(CharSequence)}, reading the bytes between the buffer's position and limit in place, without changing its
+   * position.
+   */
+
+  public static Optional<OriginVersion> peekOrigin(final ByteBuffer sdp)
+  {
+    return peekOrigin(SdpUtils.wrap(sdp, sdp.position(), sdp.remaining()));
+  }
+
+  /**
+   * Parses the SDP, unless its o= line has the same session id and version as the previous one, in which case the session hasn't changed
+   * (RFC 3264, section 8) and the previous instance is returned as is.
+   * 
+   * Useful for re-INVITEs, UPDATEs and retransmissions, which mostly repeat the previous SDP.
+   */
+
+  public static SessionDescription parseIfChanged(final SessionDescription previous, final CharSequence sdp)
+  {
+    return parseIfChanged(previous, sdp, SdpParserOptions.DEFAULT);
+  }
+
+  /**
+   * As {@link #parseIfChanged(SessionDescription, CharSequence)}, failing if a changed SDP exceeds any of the given limits.
+   */
+
+  public static SessionDescription parseIfChanged(final SessionDescription previous, final CharSequence sdp, final SdpParserOptions options)
+  {
+    if (previous != null && isSameVersion(previous, sdp))
+    {
+      return previous;
+    }
+    return parse(sdp, options);
+  }
+
+  /**
+   * As {@link #parseIfChanged(SessionDescription, CharSequence)}, reading the bytes in place.
+   */
+
+  public static SessionDescription parseIfChanged(final SessionDescription previous, final byte[] sdp)
+  {
+    return parseIfChanged(previous, new ByteCharSequence(sdp));
+  }
+
+  /**
+   * As {@link #parseIfChanged(SessionDescription, CharSequence, SdpParserOptions)}, reading the bytes in place.
+   */
+
+  public static SessionDescription parseIfChanged(final SessionDescription previous, final byte[] sdp, final SdpParserOptions options)
+  {
+    return parseIfChanged(previous, new ByteCharSequence(sdp), options);
+  }
+
+  /**
+   * As {@link #parseIfChanged(SessionDescription, CharSequence)}, reading the bytes between the buffer's position and limit in place,
+   * without changing its position.
+   */
+
+  public static SessionDescription parseIfChanged(final SessionDescription previous, final ByteBuffer sdp)
+  {
+    return parseIfChanged(previous, SdpUtils.wrap(sdp, sdp.position(), sdp.remaining()));
+  }
+
+  /**
+   * As {@link #parseIfChanged(SessionDescription, CharSequence, SdpParserOptions)}, reading the bytes between the buffer's position and
+   * limit in place, without changing its position.
+   */
+
+  public static SessionDescription parseIfChanged(final SessionDescription previous, final ByteBuffer sdp, final SdpParserOptions options)
+  {
+    return parseIfChanged(previous, SdpUtils.wrap(sdp, sdp.position(), sdp.remaining()), options);
+  }
+
+  private static boolean isSameVersion(final SessionDescription previous, final CharSequence sdp)
+  {
+    final OriginVersion version = SdpParser.peekOrigin(new SdpReader(sdp));
+    return version != null && version.matches(previous.origin());
+  }
+
+  /**
+   * Parses the session level lines, but defers parsing each media section until it is first accessed (e.g, through {@link #media(int)}
+   * or {@link #medias()}). Useful when only a small part of the SDP is going to be looked at.
+   * 
+   * Errors in a media section are only reported when it is accessed.
+   */
+
+  public static SessionDescription parseLazy(final String sdp)
+  {
+    return parseLazy((CharSequence) sdp, SdpParserOptions.DEFAULT);
+  }
+
+  /**
+   * As {@link #parseLazy(String)}, reading the bytes in place. The array is referenced by the returned instance, so it must not be
+   * modified after this call.
+   */
+
+  public static SessionDescription parseLazy(final byte[] sdp)
+  {
+    return parseLazy(new ByteCharSequence(sdp), SdpParserOptions.DEFAULT);
+  }
+
+  /**
+   * As {@link #parseLazy(String)}, failing if the SDP exceeds any of the given limits. The number of lines, media sections and bytes are
+   * checked up front, and the attributes and formats of each media section when it is parsed.
+   */
+
+  public static SessionDescription parseLazy(final String sdp, final SdpParserOptions options)
+  {
+    return parseLazy((CharSequence) sdp, options);
+  }
+
+  /**
+   * As {@link #parseLazy(byte[])}, failing if the SDP exceeds any of the given limits.
+   */
+
+  public static SessionDescription parseLazy(final byte[] sdp, final SdpParserOptions options)
+  {
+    return parseLazy(new ByteCharSequence(sdp), options);
+  }
+
+  private static SessionDescription parseLazy(final CharSequence sdp, final SdpParserOptions options)
+  {
+    if (SdpUtils.isBlank(sdp))
     {
       return SessionDescription.builder().build();
     }
-    SdpReader reader = new SdpReader(sdp);
-    SdpParser parser = new SdpParser(reader);
-    return parser.read();
+    return new SdpParser(new SdpReader(sdp), options).readLazy();
+  }
+
+  private static SessionDescription parse(final CharSequence sdp, final SdpParserOptions options)
+  {
+    if (SdpUtils.isBlank(sdp))
+    {
+      return SessionDescription.builder().build();
+    }
+    return new SdpParser(new SdpReader(sdp), options).read();
   }
 
   /**
@@ -237,7 +657,7 @@ public class SessionDescription
 
   public SessionDescription mutateMedia(final Function<Media, Media> mutator)
   {
-    return withMedias(this.medias.stream().map(mutator).collect(Collectors.toList()));
+    return withMedias(SdpLists.map(this.medias, mutator));
   }
 
   /**
@@ -246,9 +666,7 @@ public class SessionDescription
 
   public SessionDescription mutateMedia(int index, final Function<Media, Media> mutator)
   {
-    ArrayList<Media> nm = new ArrayList<>(medias);
-    nm.set(index, mutator.apply(nm.get(index)));
-    return withMedias(nm);
+    return withMedias(SdpLists.set(this.medias, index, mutator.apply(this.medias.get(index))));
   }
 
   /**
@@ -263,39 +681,37 @@ public class SessionDescription
   public SessionDescription disable(final BiPredicate<Integer, Media> predicate)
   {
 
-    List<Media> medias = new ArrayList<>();
+    // copied on the first change, so nothing is copied if nothing is disabled.
+    List<Media> medias = null;
 
     for (int i = 0; i < this.medias.size(); ++i)
     {
 
       Media m = media(i);
 
-      if (m.port() == 0)
-      {
-        medias.add(m);
-      }
-      else if (predicate.test(i, m))
-      {
-        medias.add(m.disabled());
-      }
-      else
+      if (m.port() != 0 && predicate.test(i, m))
       {
-        medias.add(m);
+        if (medias == null)
+        {
+          medias = new ArrayList<>(this.medias);
+        }
+        medias.set(i, m.disabled());
       }
 
     }
 
-    return withMedias(medias);
+    return (medias == null) ? this : withMedias(SdpLists.adopt(medias));
   }
 
   public SessionDescription replaceMedia(final Media from, final Media to)
   {
-    return withMedias(this.medias.stream().map(m -> m == from ? to : m).collect(Collectors.toList()));
+    return withMedias(SdpLists.map(this.medias, m -> m == from ? to : m));
   }
 
   public Optional<Attribute> getAttribute(final String key)
   {
-    return this.attributes.stream().filter(a -> key.equals(a.getKey())).findFirst();
+    final int idx = this.index().first(key);
+    return (idx == -1) ? Optional.empty() : Optional.of(this.attributes.get(idx));
   }
 
   private static final List<String> DISTRIBUTABLE_ATTRS = Arrays.asList("fingerprint");
@@ -306,10 +722,7 @@ public class SessionDescription
     List<Attribute> attrsToDistribute = this.attributes().stream().filter((a) -> DISTRIBUTABLE_ATTRS.contains(a.getKey()))
         .collect(Collectors.toList());
     // Should I remove the connection and attributes from the session-level...?
-    return this.withMedias(
-        this.medias().stream()
-            .map((m) -> canonicalize(m, sdpConnection, attrsToDistribute))
-            .collect(Collectors.toList()));
+    return this.withMedias(SdpLists.map(this.medias, (m) -> canonicalize(m, sdpConnection, attrsToDistribute)));
   }
 
   private Media canonicalize(
@@ -333,16 +746,17 @@ public class SessionDescription
 
   public Media media(int i)
   {
-    return medias().get(i);
+    if (this.medias == null)
+    {
+      throw new IndexOutOfBoundsException("Index: " + i);
+    }
+    return this.medias.get(i);
   }
 
   public Optional<String> attribute(String name)
   {
-    return attributes()
-        .stream()
-        .filter(a -> a.getKey().equals(name))
-        .findAny()
-        .map(e -> e.getValue() == null ? "" : e.getValue());
+    final int idx = this.index().first(name);
+    return (idx == -1) ? Optional.empty() : Optional.of(Media.valueOf(this.attributes.get(idx)));
   }
 
   public Optional<Integer> ptime()
@@ -25,7 +25,19 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
@@ -329,4 +341,1074 @@ public class SessionDescriptionTest
         .build();
     sdp.medias().get(0).attributes();
   }
+
+  @Test
+  public void parsesFromBytes() throws Exception
+  {
+    final String input = "v=0\r\n" +
+        "o=- 1111111 1408401718 IN IP4 192.168.1.242\r\n" +
+        "s=caf\u00e9\r\n" +
+        "c=IN IP4 192.168.1.242\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 16028 RTP/AVP 9 8 101\r\n" +
+        "a=rtpmap:101 telephone-event/8000\r\n" +
+        "a=sendrecv\r\n";
+
+    final SessionDescription sdp = SessionDescription.parse(input.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(SessionDescription.parse(input), sdp);
+    assertEquals(1408401718L, sdp.origin().version());
+    assertEquals(16028, sdp.media(0).port());
+    assertTrue(sdp.toString().contains("s=caf\u00e9\r\n"));
+  }
+
+  @Test
+  public void parsesFromByteBuffers() throws Exception
+  {
+    final byte[] input = ("v=0\r\n" +
+        "o=- 1111111 1408401718 IN IP4 192.168.1.242\r\n" +
+        "s=-\r\n" +
+        "c=IN IP4 192.168.1.242\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 16028 RTP/AVP 0 101\r\n" +
+        "a=sendrecv\r\n").getBytes(StandardCharsets.UTF_8);
+
+    final SessionDescription expected = SessionDescription.parse(input);
+
+    final ByteBuffer direct = ByteBuffer.allocateDirect(input.length + 4);
+    direct.position(4);
+    direct.put(input);
+    direct.position(4);
+
+    assertEquals(expected, SessionDescription.parse(direct));
+    assertEquals(4, direct.position());
+    assertEquals(expected, SessionDescription.parse(direct, 4, input.length));
+
+    final ByteBuffer heap = ByteBuffer.wrap(input);
+    assertEquals(expected, SessionDescription.parse(heap.asReadOnlyBuffer()));
+    assertEquals(expected, SessionDescription.parse(heap));
+    assertEquals(0, heap.position());
+  }
+
+  @Test
+  public void lazyParseMatchesEagerParse() throws Exception
+  {
+    final String input = "v=0\n" +
+        "o=- 1111111 1408401718 IN IP4 192.168.1.242\n" +
+        "s=-\n" +
+        "c=IN IP4 192.168.1.242\n" +
+        "t=0 0\n" +
+        "m=audio 2 RTP/SAVP 0 2 3 101\n" +
+        "c=IN IP4 1.2.3.4\n" +
+        "a=fmtp:101 0-15\n" +
+        "a=sendrecv\n" +
+        "m=video 4 RTP/AVP 96\n" +
+        "a=sendonly\n" +
+        "m=audio 0 RTP/AVP 0 x\n";
+
+    final SessionDescription lazy = SessionDescription.parseLazy(input.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(1408401718L, lazy.origin().version());
+    assertEquals("video", lazy.media(1).type());
+    assertTrue(lazy.media(1) == lazy.media(1));
+    assertEquals(3, lazy.medias().size());
+    assertEquals(SessionDescription.parse(input), lazy);
+    assertEquals(SessionDescription.parse(input).toString(), lazy.toString());
+  }
+
+  @Test
+  public void handlerReceivesEvents() throws Exception
+  {
+    final StringBuilder sb = new StringBuilder();
+
+    SdpParser.parse("v=0\r\n" +
+        "o=- 1111111 1408401718 IN IP4 192.168.1.242\r\n" +
+        "s=-\r\n" +
+        "t=0 0\r\n" +
+        "a=group:BUNDLE 0\r\n" +
+        "m=audio 16028 RTP/AVP 0 101\r\n" +
+        "c=IN IP4 1.2.3.4\r\n" +
+        "a=sendrecv\r\n" +
+        "m=video 0 RTP/AVP 96\r\n", new SdpHandler()
+        {
+
+          @Override
+          public void onOrigin(CharSequence username, long sessionId, long version, CharSequence networkType,
+              CharSequence addressType, CharSequence address)
+          {
+            sb.append("o:").append(sessionId).append('/').append(version).append('/').append(address).append(' ');
+          }
+
+          @Override
+          public void onConnection(CharSequence networkType, CharSequence addressType, CharSequence address)
+          {
+            sb.append("c:").append(address).append(' ');
+          }
+
+          @Override
+          public void onAttribute(CharSequence key, CharSequence value)
+          {
+            sb.append("a:").append(key).append('=').append(value).append(' ');
+          }
+
+          @Override
+          public void onMediaStart(CharSequence type, int port, CharSequence protocol, CharSequence formats)
+          {
+            sb.append("m:").append(type).append('/').append(port).append('/').append(formats).append(' ');
+          }
+
+          @Override
+          public void onMediaEnd()
+          {
+            sb.append("end ");
+          }
+
+          @Override
+          public void onLine(char type, CharSequence value)
+          {
+            sb.append(type).append(':').append(value).append(' ');
+          }
+
+        });
+
+    assertEquals(
+        "o:1111111/1408401718/192.168.1.242 t:0 0 a:group=BUNDLE 0 m:audio/16028/0 101 c:1.2.3.4 a:sendrecv=null end m:video/0/96 end ",
+        sb.toString());
+  }
+
+  @Test
+  public void skipsParsingWhenOriginVersionIsUnchanged() throws Exception
+  {
+    final String offer = "v=0\r\n" +
+        "o=- 1111111 5 IN IP4 192.168.1.242\r\n" +
+        "s=-\r\n" +
+        "c=IN IP4 192.168.1.242\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 16028 RTP/AVP 0\r\n";
+
+    assertEquals(new OriginVersion(1111111, 5), SessionDescription.peekOrigin(offer).get());
+    assertFalse(SessionDescription.peekOrigin("v=0\r\ns=-\r\n").isPresent());
+
+    final SessionDescription previous = SessionDescription.parse(offer);
+
+    assertTrue(previous == SessionDescription.parseIfChanged(previous, offer.getBytes(StandardCharsets.UTF_8)));
+
+    final SessionDescription updated = SessionDescription.parseIfChanged(previous, offer.replace(" 5 IN", " 6 IN"));
+    assertFalse(previous == updated);
+    assertEquals(6, updated.origin().version());
+
+    // limits apply to a changed SDP, but not to one that is returned as is.
+    final SdpParserOptions limits = SdpParserOptions.DEFAULT.withMaxMedia(1);
+    final String twoMedia = offer + "m=video 16030 RTP/AVP 31\r\n";
+    assertTrue(previous == SessionDescription.parseIfChanged(previous, twoMedia, limits));
+
+    try
+    {
+      final byte[] changed = twoMedia.replace(" 5 IN", " 7 IN").getBytes(StandardCharsets.UTF_8);
+      SessionDescription.parseIfChanged(previous, ByteBuffer.wrap(changed), limits);
+      Assert.fail();
+    }
+    catch (final SdpParseException ex)
+    {
+      assertEquals(SdpParseError.LIMIT_EXCEEDED, ex.error());
+    }
+  }
+
+  @Test
+  public void pushParserHandlesEverySplitPoint() throws Exception
+  {
+    final byte[] input = ("v=0\r\n" +
+        "o=- 1111111 1408401718 IN IP4 192.168.1.242\r\n" +
+        "s=-\r\n" +
+        "c=IN IP4 192.168.1.242\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 16028 RTP/AVP 0 101\r\n" +
+        "a=rtpmap:101 telephone-event/8000\r\n" +
+        "m=video 0 RTP/AVP 96\r\n" +
+        "a=inactive").getBytes(StandardCharsets.UTF_8);
+
+    final SessionDescription expected = SessionDescription.parse(input);
+
+    for (int split = 0; split <= input.length; ++split)
+    {
+      for (int second = split; second <= input.length; second += 7)
+      {
+        final SdpPushParser parser = new SdpPushParser();
+        parser.feed(input, 0, split);
+        parser.feed(ByteBuffer.wrap(input, split, second - split).slice());
+        parser.feed(input, second, input.length - second);
+        assertEquals(expected, parser.complete());
+      }
+    }
+
+    // errors are reported at their position in the whole body, wherever it is split.
+    final String malformed = "v=0\r\n" +
+        "o=- 1 1 IN IP4 192.168.1.242\r\n" +
+        "s=-\r\n" +
+        "t=0 0\r\n" +
+        "m=audio x RTP/AVP 0\r\n";
+
+    final SdpParseException error = (SdpParseException) SessionDescription.tryParse(malformed).error().get();
+    assertEquals(5, error.line());
+    assertEquals(55, error.offset());
+
+    final byte[] bytes = malformed.getBytes(StandardCharsets.UTF_8);
+
+    for (int split = 0; split <= bytes.length; ++split)
+    {
+      final SdpPushParser parser = new SdpPushParser();
+      try
+      {
+        parser.feed(bytes, 0, split);
+        parser.feed(bytes, split, bytes.length - split);
+        parser.complete();
+        Assert.fail();
+      }
+      catch (final SdpParseException ex)
+      {
+        assertEquals("split at " + split, error.line(), ex.line());
+        assertEquals("split at " + split, error.offset(), ex.offset());
+      }
+    }
+  }
+
+  @Test
+  public void batchParsesInOrderAndCapturesFailures() throws Exception
+  {
+    final List<byte[]> bodies = new ArrayList<>();
+
+    for (int i = 0; i < 200; ++i)
+    {
+      final String sdp = (i % 50 == 7)
+          ? "v=1\r\n"
+          : "v=0\r\no=- 1 " + i + " IN IP4 1.2.3.4\r\ns=-\r\nt=0 0\r\nm=audio " + (1000 + i) + " RTP/AVP 0\r\n";
+      bodies.add(sdp.getBytes(StandardCharsets.UTF_8));
+    }
+
+    final List<SdpParseResult> results = SdpBatchParser.parse(bodies);
+
+    assertEquals(200, results.size());
+
+    for (int i = 0; i < 200; ++i)
+    {
+      if (i % 50 == 7)
+      {
+        assertFalse(results.get(i).isSuccess());
+      }
+      else
+      {
+        assertEquals(i, results.get(i).get().origin().version());
+      }
+    }
+
+    assertEquals(
+        results.stream().map(SdpParseResult::isSuccess).collect(Collectors.toList()),
+        SdpBatchParser.parse(bodies.stream()).map(SdpParseResult::isSuccess).collect(Collectors.toList()));
+  }
+
+  @Test
+  public void readsCorpusFiles() throws Exception
+  {
+    final Path separated = Files.createTempFile("sdp", ".txt");
+    final Path prefixed = Files.createTempFile("sdp", ".bin");
+
+    try
+    {
+      final ByteArrayOutputStream text = new ByteArrayOutputStream();
+      final DataOutputStream binary = new DataOutputStream(Files.newOutputStream(prefixed));
+
+      for (int i = 0; i < 20; ++i)
+      {
+        final byte[] sdp = ("v=0\r\no=- 1 " + i + " IN IP4 1.2.3.4\r\ns=-\r\nt=0 0\r\nm=audio 1000 RTP/AVP 0\r\n")
+            .getBytes(StandardCharsets.UTF_8);
+        text.write("--\r\n".getBytes(StandardCharsets.UTF_8));
+        text.write(sdp);
+        binary.writeInt(sdp.length);
+        binary.write(sdp);
+      }
+
+      binary.close();
+      Files.write(separated, text.toByteArray());
+
+      // small windows, so bodies straddle mappings.
+      try (SdpCorpusReader reader = SdpCorpusReader.open(separated, "--", 100))
+      {
+        assertEquals(
+            Lists.newArrayList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L),
+            reader.stream().map(sdp -> sdp.origin().version()).collect(Collectors.toList()));
+      }
+
+      try (SdpCorpusReader reader = SdpCorpusReader.open(prefixed, null, 100))
+      {
+        assertEquals(190L, reader.parallelStream().mapToLong(sdp -> sdp.origin().version()).sum());
+      }
+
+      try (SdpCorpusReader reader = SdpCorpusReader.lengthPrefixed(prefixed))
+      {
+        assertEquals(20, reader.bodies().count());
+      }
+
+      // a corrupt length near Integer.MAX_VALUE in a file over 2GB (sparse, so nothing much is written).
+      try (RandomAccessFile file = new RandomAccessFile(prefixed.toFile(), "rw"))
+      {
+        file.setLength(3L * 1024 * 1024 * 1024);
+        file.seek(0);
+        file.writeInt(Integer.MAX_VALUE);
+      }
+
+      try (SdpCorpusReader reader = SdpCorpusReader.lengthPrefixed(prefixed))
+      {
+        reader.bodies().count();
+        Assert.fail();
+      }
+      catch (final UncheckedIOException ex)
+      {
+        // expected
+      }
+    }
+    finally
+    {
+      Files.delete(separated);
+      Files.delete(prefixed);
+    }
+  }
+
+  @Test
+  public void wellKnownAttributesAreShared() throws Exception
+  {
+    final SessionDescription sdp = SessionDescription.parse("v=0\r\n" +
+        "o=- 1 1 IN IP4 1.2.3.4\r\n" +
+        "s=-\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 1000 RTP/AVP 0\r\n" +
+        "a=rtpmap:0 PCMU/8000\r\n" +
+        "a=x-custom:1\r\n" +
+        "a=sendrecv\r\n" +
+        "m=audio 1002 RTP/AVP 0\r\n" +
+        "a=sendrecv\r\n");
+
+    assertTrue(sdp.media(0).attributes().get(2) == sdp.media(1).attributes().get(0));
+    assertTrue(sdp.media(0).attributes().get(0).is(SdpAttributeKey.RTPMAP));
+    assertTrue(sdp.media(0).attributes().get(0).getKey() == SdpAttributeKey.RTPMAP.key());
+    assertEquals(null, sdp.media(0).attributes().get(1).wellKnownKey());
+    assertEquals(SdpAttributeKey.FMTP, new Attribute("fmtp", "101 0-15").wellKnownKey());
+    assertEquals(new Attribute("sendrecv"), SdpAttributeKey.SENDRECV.flag());
+    assertEquals(SdpAttributeKey.ICE_UFRAG, SdpAttributeKey.lookup("ice-ufrag"));
+    assertEquals(null, SdpAttributeKey.lookup("ice-ufra"));
+
+    // a null key is accepted, as before, and isn't well known.
+    assertEquals(null, new Attribute(null, "x").wellKnownKey());
+    assertEquals(null, new Attribute(null, "x").getKey());
+  }
+
+  @Test
+  public void typedAttributeViewsAreDecodedOnce() throws Exception
+  {
+    final Media media = SessionDescription.parse("v=0\r\n" +
+        "o=- 1 1 IN IP4 1.2.3.4\r\n" +
+        "s=-\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 1000 RTP/SAVP 0 101\r\n" +
+        "a=rtpmap:101 telephone-event/8000\r\n" +
+        "a=fmtp:101 0-15\r\n" +
+        "a=crypto:1 AES_CM_128_HMAC_SHA1_80 inline:d0RmdmcmVCspeEc3QGZiNWpVLFJhQX1cfHAwJSoj\r\n" +
+        "a=ptime:20\r\n").media(0);
+
+    assertTrue(media.rtpmap() == media.rtpmap());
+    assertTrue(media.payloadMap() == media.payloadMap());
+    assertTrue(media.crypto().get() == media.crypto().get());
+    assertEquals(Integer.valueOf(20), media.ptime().get());
+    assertEquals("0-15", media.payloadMap().get(101).getParameters());
+    assertEquals("PCMU", media.payloadMap().get(0).getEntry().getFormat());
+
+    final Media updated = media.replaceAttribute("ptime", "30");
+    assertEquals(Integer.valueOf(30), updated.ptime().get());
+    assertEquals(Integer.valueOf(20), media.ptime().get());
+    assertEquals(media.withPort(1000), media);
+  }
+
+  @Test
+  public void payloadTypesAreStoredAsInts() throws Exception
+  {
+    final SessionDescription sdp = SessionDescription.parse("v=0\r\n" +
+        "o=- 1 1 IN IP4 1.2.3.4\r\n" +
+        "s=-\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 1000 RTP/AVP 0 8 101\r\n" +
+        "a=rtpmap:0 PCMU/8000\r\n" +
+        "a=rtpmap:8 PCMA/8000\r\n" +
+        "a=rtpmap:99 foo/8000\r\n" +
+        "a=rtpmap:101 telephone-event/8000\r\n" +
+        "a=fmtp:101 0-15\r\n" +
+        "m=image 1002 udptl t38\r\n");
+
+    final Media audio = sdp.media(0);
+
+    assertEquals(Lists.newArrayList("0", "8", "101"), audio.formats());
+    assertEquals(109, audio.payloadTypes().sum());
+    assertTrue(audio.hasPayloadType(101));
+    assertFalse(audio.hasPayloadType(99));
+
+    final Media filtered = audio.filterPayloadTypes(pt -> pt != 8);
+    assertEquals(Lists.newArrayList("0", "101"), filtered.formats());
+    assertEquals(4, filtered.attributes().size());
+
+    assertEquals(4, audio.cleanup().attributes().size());
+
+    assertEquals(Lists.newArrayList("t38"), sdp.media(1).formats());
+    assertEquals(0, sdp.media(1).payloadTypes().count());
+
+    assertEquals(Lists.newArrayList("0", "9"), Media.rtpAudioBuilder(1234, 0, 9).build().formats());
+
+    // a format with a leading zero is kept as written, even once the media is changed.
+    final Media padded = SessionDescription.parse("v=0\r\n" +
+        "o=- 1 1 IN IP4 1.2.3.4\r\n" +
+        "s=-\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 1000 RTP/AVP 0 08\r\n").media(0);
+    assertEquals(Lists.newArrayList("0", "08"), padded.formats());
+    assertEquals("m=audio 1002 RTP/AVP 0 08", padded.withPort(1002).mline());
+    assertFalse(padded.formats().equals(Lists.newArrayList("0", "8")));
+  }
+
+  @Test
+  public void parsesPortCountAndFieldsWithExtraWhitespace()
+  {
+
+    final SessionDescription sd = SessionDescription.parse(
+        "v=0\r\no=-  1  2 IN IP4 10.0.0.1\r\ns=-\r\nc=IN  IP4 10.0.0.1\r\nt=0 0\r\nm=video 49170/2 RTP/AVP  31 32\r\n");
+
+    assertEquals(1, sd.origin().sessionId());
+    assertEquals(2, sd.origin().version());
+    assertEquals(49170, sd.media(0).port());
+    assertEquals(2, sd.media(0).numberOfPorts());
+    assertEquals(Lists.newArrayList("31", "32"), sd.media(0).formats());
+    assertEquals("m=video 49170/2 RTP/AVP 31 32", sd.media(0).mline());
+    assertEquals(sd, SessionDescription.parse(sd.toString()));
+
+  }
+
+  @Test
+  public void tryParseReportsWhereTheSdpIsMalformed()
+  {
+
+    assertTrue(SessionDescription.tryParse("v=0\r\no=- 1 2 IN IP4 10.0.0.1\r\ns=-\r\n".getBytes()).isSuccess());
+
+    final SdpParseResult result = SessionDescription.tryParse("v=0\r\no=- 1 2 IN IP4 10.0.0.1\r\ns=-\r\nm=audio xx RTP/AVP 0\r\n");
+
+    assertFalse(result.isSuccess());
+    assertEquals(SdpParseError.INVALID_NUMBER, result.errorCode());
+    assertEquals(4, result.line());
+    assertEquals(43, result.offset());
+    assertEquals(0, result.error().get().getStackTrace().length);
+
+    assertEquals(SdpParseError.MISSING_FIELD, SessionDescription.tryParse("v=0\r\nc=IN IP4\r\n").errorCode());
+    assertEquals(SdpParseError.INVALID_LINE, SessionDescription.tryParse("v=0\r\nbogus\r\n").errorCode());
+    assertEquals(SdpParseError.INVALID_VERSION, SessionDescription.tryParse("v=1\r\n").errorCode());
+
+    try
+    {
+      RtpMapEntry.parse("x PCMU/8000");
+      Assert.fail();
+    }
+    catch (final SdpParseException ex)
+    {
+      assertEquals(SdpParseError.INVALID_ATTRIBUTE, ex.error());
+    }
+
+    assertEquals(new RtpMapEntry(111, "opus", 48000, 2), RtpMapEntry.parse("111 opus/48000/2"));
+
+  }
+
+  @Test
+  public void parserOptionsLimitTheSdp()
+  {
+
+    final String sdp = "v=0\r\no=- 1 2 IN IP4 10.0.0.1\r\ns=-\r\nc=IN IP4 10.0.0.1\r\nt=0 0\r\n"
+        + "m=audio 5004 RTP/AVP 0 8 101\r\na=rtpmap:0 PCMU/8000\r\na=rtpmap:8 PCMA/8000\r\n"
+        + "m=video 5006 RTP/AVP 31\r\n";
+
+    assertTrue(SessionDescription.tryParse(sdp, SdpParserOptions.UNTRUSTED).isSuccess());
+
+    final SdpParserOptions limits = SdpParserOptions.builder().maxMedia(2).maxFormats(3).maxAttributes(2).maxLines(9).build();
+
+    assertTrue(SessionDescription.tryParse(sdp, limits).isSuccess());
+
+    assertEquals(SdpParseError.LIMIT_EXCEEDED, SessionDescription.tryParse(sdp, limits.withMaxMedia(1)).errorCode());
+    assertEquals(SdpParseError.LIMIT_EXCEEDED, SessionDescription.tryParse(sdp, limits.withMaxFormats(2)).errorCode());
+    assertEquals(SdpParseError.LIMIT_EXCEEDED, SessionDescription.tryParse(sdp, limits.withMaxAttributes(1)).errorCode());
+    assertEquals(SdpParseError.LIMIT_EXCEEDED, SessionDescription.tryParse(sdp, limits.withMaxLines(8)).errorCode());
+    assertEquals(SdpParseError.LIMIT_EXCEEDED, SessionDescription.tryParse(sdp, limits.withMaxBytes(64)).errorCode());
+
+    final SdpPushParser push = new SdpPushParser(SdpParserOptions.builder().maxBytes(16).build());
+
+    push.feed(new byte[16]);
+
+    try
+    {
+      push.feed(new byte[1]);
+      Assert.fail();
+    }
+    catch (final SdpParseException ex)
+    {
+      assertEquals(SdpParseError.LIMIT_EXCEEDED, ex.error());
+    }
+
+    // lazy parsing checks the lines, media sections and bytes up front, and each media section's limits when it is parsed.
+    assertEquals(2, SessionDescription.parseLazy(sdp, limits).medias().size());
+
+    for (final SdpParserOptions exceeded : Arrays.asList(limits.withMaxMedia(1), limits.withMaxLines(8), limits.withMaxBytes(64)))
+    {
+      try
+      {
+        SessionDescription.parseLazy(sdp.getBytes(StandardCharsets.UTF_8), exceeded);
+        Assert.fail();
+      }
+      catch (final SdpParseException ex)
+      {
+        assertEquals(SdpParseError.LIMIT_EXCEEDED, ex.error());
+      }
+    }
+
+    final SessionDescription lazy = SessionDescription.parseLazy(sdp, limits.withMaxAttributes(1));
+    assertEquals(0, lazy.media(1).attributes().size());
+
+    try
+    {
+      lazy.media(0);
+      Assert.fail();
+    }
+    catch (final SdpParseException ex)
+    {
+      assertEquals(SdpParseError.LIMIT_EXCEEDED, ex.error());
+    }
+
+    // as does the pool.
+    final SdpParserOptions pooled = limits.withPool(new SdpInternPool(64));
+    Assert.assertSame(SessionDescription.parseLazy(sdp, pooled).media(0), SessionDescription.parseLazy(sdp, pooled).media(0));
+
+  }
+
+  @Test
+  public void roundTripsUnmodifiedSectionsExactly()
+  {
+
+    final String input = "v=0\r\n" +
+        "o=- 1 2 IN IP4 10.0.0.1\r\n" +
+        "s=call\r\n" +
+        "i=a session\r\n" +
+        "c=IN IP4 10.0.0.1\r\n" +
+        "b=AS:128\r\n" +
+        "t=3034423619 3042462419\r\n" +
+        "r=7d 1h 0 25h\r\n" +
+        "z=2882844526 -1h\r\n" +
+        "a=tool:x\r\n" +
+        "m=audio 5004 RTP/AVP 0\r\n" +
+        "i=voice\r\n" +
+        "b=AS:64\r\n" +
+        "a=sendrecv\r\n" +
+        "a=rtpmap:0 PCMU/8000\r\n";
+
+    final SessionDescription sd = SessionDescription.parse(input);
+
+    assertEquals(input, sd.toString());
+    assertEquals(Lists.newArrayList("i=voice", "b=AS:64"), sd.media(0).unknowns());
+    assertEquals(input, SessionDescription.parse(input.replace("\r\n", "\n")).toString());
+
+    // only the changed session section is re-rendered, and nothing is dropped.
+    assertEquals(input.replace("o=- 1 2", "o=- 1 3"), sd.newVersion().toString());
+
+    final SessionDescription changed = sd.mutateMedia(m -> m.withPort(6000));
+
+    assertEquals(input.replace("5004", "6000"), changed.toString());
+    assertEquals(changed, SessionDescription.parse(changed.toString()));
+
+  }
+
+  @Test
+  public void writesUtf8Bytes() throws Exception
+  {
+
+    final SessionDescription sd = SessionDescription.parse("v=0\r\n" +
+        "o=- 9223372036854775807 2 IN IP4 10.0.0.1\r\n" +
+        "s=caf\u00e9 \ud83d\udcde\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 5004/2 RTP/AVP 0 8 101\r\n" +
+        "a=rtpmap:0 PCMU/8000\r\n" +
+        "a=sendrecv\r\n")
+        .newVersion();
+
+    final byte[] expected = sd.toString().getBytes(StandardCharsets.UTF_8);
+
+    assertTrue(sd.toString().startsWith("v=0\r\no=- 9223372036854775807 3 IN IP4 10.0.0.1\r\ns=caf\u00e9 \ud83d\udcde\r\nt=0 0\r\n"));
+    assertTrue(sd.toString().endsWith("m=audio 5004/2 RTP/AVP 0 8 101\r\na=rtpmap:0 PCMU/8000\r\na=sendrecv\r\n"));
+
+    final ByteBuffer buffer = ByteBuffer.allocate(expected.length);
+    assertEquals(expected.length, SdpWriter.write(sd, buffer));
+    assertEquals(0, buffer.remaining());
+    Assert.assertArrayEquals(expected, buffer.array());
+
+    final byte[] array = new byte[expected.length + 3];
+    assertEquals(expected.length, SdpWriter.write(sd, array, 3));
+    Assert.assertArrayEquals(expected, Arrays.copyOfRange(array, 3, array.length));
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertEquals(expected.length, SdpWriter.write(sd, out));
+    Assert.assertArrayEquals(expected, out.toByteArray());
+
+    // unchanged sections parsed from bytes are copied as is.
+    final SessionDescription bytes = SessionDescription.parseLazy(expected);
+    assertEquals(expected.length, SdpWriter.write(bytes, out));
+
+    // written straight into the destination the first time, and only kept once written again.
+    for (final SessionDescription fresh : Arrays.asList(SessionDescription.parse(sd.toString()), sd.detached()))
+    {
+      final byte[] first = new byte[expected.length];
+      SdpWriter.write(fresh, first, 0);
+      Assert.assertArrayEquals(expected, first);
+      assertFalse(fresh.serialized().isRendered());
+      final ByteBuffer second = ByteBuffer.allocate(expected.length);
+      SdpWriter.write(fresh, second);
+      Assert.assertArrayEquals(expected, second.array());
+      assertTrue(fresh.serialized().isRendered());
+    }
+
+  }
+
+  @Test
+  public void renderingIsMemoized() throws Exception
+  {
+
+    final SessionDescription sd = SessionDescription.builder()
+        .origin(new Origin("-", 1, 1, "IN", "IP4", "1.2.3.4"))
+        .medias(Lists.newArrayList(Media.builder()
+            .type("audio")
+            .port(1234)
+            .protocol("RTP/AVP")
+            .formats(Lists.newArrayList("0", "8"))
+            .attributes(Lists.newArrayList(new Attribute("sendrecv", null)))
+            .build()))
+        .build();
+
+    final String text = sd.toString();
+
+    Assert.assertSame(text, sd.toString());
+    Assert.assertSame(sd.media(0).toString(), sd.media(0).toString());
+
+    // the unchanged media keeps its rendering in the new version.
+    final SessionDescription next = sd.newVersion();
+    Assert.assertSame(sd.media(0).toString(), next.media(0).toString());
+    assertEquals(text.replace("o=- 1 1", "o=- 1 2"), next.toString());
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    SdpWriter.write(next, out);
+    SdpWriter.write(next, out);
+    assertEquals(next.toString() + next.toString(), new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+  }
+
+  @Test
+  public void serializedLengthMatchesTheWrittenBytes() throws Exception
+  {
+
+    final SessionDescription sd = SessionDescription.parse("v=0\r\n" +
+        "o=- 1 2 IN IP4 10.0.0.1\r\n" +
+        "s=caf\u00e9\r\n" +
+        "c=IN IP4 10.0.0.1\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 5004 RTP/AVP 0 8 101\r\n" +
+        "a=rtpmap:101 telephone-event/8000\r\n" +
+        "m=video 0 RTP/AVP 31\r\n");
+
+    for (final SessionDescription s : Lists.newArrayList(sd, sd.newVersion(), sd.mutateMedia(m -> m.withPort(65535)).withSubject("\u00fc")))
+    {
+      final int length = s.serializedLength();
+      assertEquals(s.toString().getBytes(StandardCharsets.UTF_8).length, length);
+      assertEquals(s.media(0).toString().getBytes(StandardCharsets.UTF_8).length, s.media(0).serializedLength());
+      assertEquals(length, SdpWriter.write(s, new byte[length], 0));
+    }
+
+    final ByteBuffer small = ByteBuffer.allocate(sd.serializedLength() - 1);
+
+    try
+    {
+      SdpWriter.write(sd, small);
+      Assert.fail();
+    }
+    catch (final BufferOverflowException ex)
+    {
+      assertEquals(0, small.position());
+    }
+
+  }
+
+  @Test
+  public void newVersionSplicesThePreviousRendering() throws Exception
+  {
+
+    final String input = "v=0\r\n" +
+        "o=- 7 99 IN IP4 10.0.0.1\r\n" +
+        "s=-\r\n" +
+        "t=0 0\r\n" +
+        "a=sendrecv\r\n" +
+        "m=audio 5004 RTP/AVP 0\r\n" +
+        "a=ptime:20\r\n" +
+        "a=sendrecv\r\n" +
+        "a=rtpmap:0 PCMU/8000\r\n";
+
+    final SessionDescription sd = SessionDescription.parse(input);
+
+    // not rendered yet, so rendered from the model.
+    assertEquals(input.replace(" 99 ", " 100 "), sd.newVersion().toString());
+
+    sd.toString();
+
+    final SessionDescription next = sd.newVersion();
+    assertEquals(input.replace(" 99 ", " 100 "), next.toString());
+    assertEquals(next.toString().length(), next.serializedLength());
+
+    final byte[] bytes = new byte[sd.serializedLength() + 1];
+    SdpWriter.write(sd, bytes, 0);
+
+    final SessionDescription held = sd.withDirection(SdpDirection.SendOnly).newVersion();
+    final byte[] expected = input.replace(" 99 ", " 100 ").replaceFirst("a=sendrecv", "a=sendonly").getBytes(StandardCharsets.UTF_8);
+    assertEquals(expected.length, held.serializedLength());
+    Assert.assertArrayEquals(expected, Arrays.copyOf(bytes, SdpWriter.write(held, bytes, 0)));
+
+    final Media media = sd.media(0);
+    media.toString();
+    assertEquals(
+        "m=audio 5004 RTP/AVP 0\r\na=ptime:20\r\na=inactive\r\na=rtpmap:0 PCMU/8000\r\n",
+        media.withDirection(SdpDirection.Inactive).toString());
+
+    // the spliced form matches what the model renders.
+    assertEquals(held, SessionDescription.parse(held.toString()));
+
+  }
+
+  @Test
+  public void templatesRenderLikeTheModel() throws Exception
+  {
+
+    final SessionDescription offer = SessionDescription.builder()
+        .origin(new Origin("-", 1, 1, "IN", "IP4", "127.0.0.1"))
+        .connection(Connection.create(InetAddressType.IP4, "127.0.0.1"))
+        .attributes(Lists.newArrayList(new Attribute("sendrecv", null)))
+        .medias(Lists.newArrayList(
+            Media.rtpAudioBuilder(1000, 0, 8, 101)
+                .attributes(Lists.newArrayList(new Attribute("rtpmap", "101 telephone-event/8000")))
+                .build(),
+            Media.builder().type("video").port(1002).protocol("RTP/AVP").formats(Lists.newArrayList("31")).build()))
+        .build();
+
+    final SdpTemplate template = SdpTemplate.compile(offer);
+
+    assertEquals(2, template.ports());
+
+    final SessionDescription expected = template.materialize(123456789012L, 7, "10.20.30.40", 5004, 5006);
+
+    assertEquals(123456789012L, expected.origin().sessionId());
+    assertEquals("10.20.30.40", expected.connection().address());
+    assertEquals(5006, expected.media(1).port());
+
+    final byte[] bytes = template.render(123456789012L, 7, "10.20.30.40", 5004, 5006);
+    assertEquals(expected.toString(), new String(bytes, StandardCharsets.UTF_8));
+
+    final ByteBuffer buffer = ByteBuffer.allocate(bytes.length);
+    assertEquals(bytes.length, template.render(buffer, 123456789012L, 7, "10.20.30.40", 5004, 5006));
+    Assert.assertArrayEquals(bytes, buffer.array());
+
+    try
+    {
+      template.render(1, 1, "10.0.0.1", 5004);
+      Assert.fail();
+    }
+    catch (final IllegalArgumentException ex)
+    {
+      // expected
+    }
+
+  }
+
+  @Test
+  public void templatesFromParsedSdpRenderLikeTheModel() throws Exception
+  {
+
+    // extra spaces, which the parsed instance would copy from its source.
+    final SessionDescription parsed = SessionDescription.parse("v=0\r\n" +
+        "o=- 1 1 IN IP4 10.0.0.1\r\n" +
+        "s=-\r\n" +
+        "c=IN IP4 10.0.0.1\r\n" +
+        "t=0 0\r\n" +
+        "m=audio 1000 RTP/AVP  0\r\n" +
+        "a=sendrecv\r\n");
+
+    final SdpTemplate template = SdpTemplate.compile(parsed.newVersion());
+
+    // the same values as the prototype, so nothing is changed by materializing.
+    final byte[] bytes = template.render(1, 2, "10.0.0.1", 1000);
+    assertEquals(new String(bytes, StandardCharsets.UTF_8), template.materialize(1, 2, "10.0.0.1", 1000).toString());
+    assertEquals(new String(template.render(3, 4, "10.0.0.2", 2000), StandardCharsets.UTF_8),
+        template.materialize(3, 4, "10.0.0.2", 2000).toString());
+
+    // a c= line with an empty address isn't filled in.
+    final SdpTemplate empty = SdpTemplate.compile(parsed.withConnection(new Connection("IN", "IP4", "")));
+    final SessionDescription materialized = empty.materialize(1, 2, "10.0.0.2", 1000);
+    assertEquals("", materialized.connection().address());
+    assertEquals(new String(empty.render(1, 2, "10.0.0.2", 1000), StandardCharsets.UTF_8), materialized.toString());
+
+  }
+
+  @Test
+  public void unchangedStructureIsShared() throws Exception
+  {
+
+    final SessionDescription sd = SessionDescription.parse("v=0\r\n" +
+        "o=- 1 2 IN IP4 10.0.0.1\r\n" +
+        "s=-\r\n" +
+        "t=0 0\r\n" +
+        "a=group:BUNDLE 0 1\r\n" +
+        "m=audio 5004 RTP/AVP 0\r\n" +
+        "a=sendrecv\r\n" +
+        "m=video 5006 RTP/AVP 31\r\n" +
+        "a=sendrecv\r\n");
+
+    // no-op edits return the same instance.
+    Assert.assertSame(sd, sd.withoutAttribute("raisin"));
+    Assert.assertSame(sd, sd.mutateMedia(m -> m.withoutAttributes("raisin")));
+    Assert.assertSame(sd, sd.disable((i, m) -> false));
+    Assert.assertSame(sd.media(0), sd.media(0).withDirection(SdpDirection.SendRecv));
+
+    // unchanged media are shared.
+    final SessionDescription held = sd.mutateMedia(1, m -> m.withDirection(SdpDirection.SendOnly));
+    Assert.assertSame(sd.media(0), held.media(0));
+    assertEquals(SdpDirection.SendOnly, held.media(1).direction().get());
+
+    final SessionDescription disabled = sd.disable((i, m) -> i == 1);
+    Assert.assertSame(sd.media(0), disabled.media(0));
+    assertEquals(0, disabled.media(1).port());
+
+    try
+    {
+      sd.attributes().add(new Attribute("raisin", null));
+      Assert.fail();
+    }
+    catch (final UnsupportedOperationException ex)
+    {
+      // read-only view.
+    }
+
+    // accessors hand out the snapshot the model holds, not a view of the list it was built with.
+    final List<Attribute> attributes = new ArrayList<>();
+    final Media m = sd.media(0).withAttributes(attributes);
+    attributes.add(new Attribute("ptime", "20"));
+    assertTrue(m.attributes().isEmpty());
+    Assert.assertSame(m.attributes(), m.attributes());
+    Assert.assertSame(held.medias(), held.medias());
+
+  }
+
+  @Test
+  public void editorMatchesChainedWithers() throws Exception
+  {
+
+    final SessionDescription sd = SessionDescription.parse("v=0\r\n" +
+        "o=- 1 2 IN IP4 10.0.0.1\r\n" +
+        "s=-\r\n" +
+        "c=IN IP4 10.0.0.1\r\n" +
+        "t=0 0\r\n" +
+        "a=group:BUNDLE 0 1\r\n" +
+        "m=audio 5004 RTP/AVP 0 8 101\r\n" +
+        "a=rtpmap:8 PCMA/8000\r\n" +
+        "a=rtpmap:101 telephone-event/8000\r\n" +
+        "a=sendrecv\r\n" +
+        "m=video 5006 RTP/AVP 31\r\n" +
+        "a=sendrecv\r\n");
+
+    final Connection local = Connection.builder().networkType("IN").addressType("IP4").address("192.168.1.1").build();
+
+    final SessionDescription chained = sd
+        .withoutAttribute("group")
+        .withConnection(local)
+        .newVersion()
+        .mutateMedia(0, m -> m.withPort(6000).filterPayloadTypes(pt -> pt != 8).withDirection(SdpDirection.SendOnly));
+
+    final SessionDescription edited = sd.edit()
+        .removeAttribute("group")
+        .connection(local)
+        .newVersion()
+        .media(0, m -> m.port(6000).filterPayloadTypes(pt -> pt != 8).direction(SdpDirection.SendOnly))
+        .freeze();
+
+    assertEquals(chained.toString(), edited.toString());
+    assertEquals(chained, edited);
+
+    // the untouched media section is shared, and the original is unchanged.
+    Assert.assertSame(sd.media(1), edited.media(1));
+    assertEquals("0 8 101", String.join(" ", sd.media(0).formats()));
+    assertTrue(sd.hasAttribute("group"));
+
+    // no changes, same instance.
+    Assert.assertSame(sd, sd.edit().removeAttribute("raisin").media(1, m -> m.removeAttribute("raisin")).freeze());
+
+    final SdpEditor editor = sd.edit();
+    editor.media(1).disable();
+    final SessionDescription disabled = editor.freeze();
+    assertEquals(sd.disable((i, m) -> i == 1), disabled);
+
+    try
+    {
+      editor.newVersion();
+      Assert.fail();
+    }
+    catch (final IllegalStateException ex)
+    {
+      // single use.
+    }
+
+  }
+
+  @Test
+  public void attributeLookupsKeepOrder() throws Exception
+  {
+
+    final SessionDescription sd = SessionDescription.parse("v=0\r\n" +
+        "o=- 1 2 IN IP4 10.0.0.1\r\n" +
+        "s=-\r\n" +
+        "t=0 0\r\n" +
+        "a=ice-lite\r\n" +
+        "a=recvonly\r\n" +
+        "m=audio 5004 RTP/SAVP 0\r\n" +
+        "a=candidate:1 1 UDP 2130706431 10.0.0.1 5004 typ host\r\n" +
+        "a=ptime:20\r\n" +
+        "a=candidate:2 1 UDP 1694498815 192.0.2.1 5004 typ srflx\r\n" +
+        "a=inactive\r\n" +
+        "a=rtcp-mux\r\n");
+
+    assertTrue(sd.hasAttribute("ice-lite"));
+    assertFalse(sd.hasAttribute("ice-ufrag"));
+    assertEquals("", sd.attribute("ice-lite").get());
+    assertEquals(SdpDirection.RecvOnly, sd.direction().get());
+    assertFalse(sd.getAttribute("candidate").isPresent());
+
+    final Media m = sd.media(0);
+
+    assertEquals(Arrays.asList("1 1 UDP 2130706431 10.0.0.1 5004 typ host", "2 1 UDP 1694498815 192.0.2.1 5004 typ srflx"),
+        m.attributes("candidate"));
+    assertEquals("1 1 UDP 2130706431 10.0.0.1 5004 typ host", m.attribute("candidate").get());
+    assertEquals("20", m.singleAttributeValue("ptime"));
+    assertEquals(null, m.singleAttributeValue("maxptime"));
+    assertEquals("", m.attribute("rtcp-mux").get());
+    assertTrue(m.attributes("fmtp").isEmpty());
+    assertEquals(SdpDirection.Inactive, m.direction().get());
+
+    // a copy is indexed afresh.
+    final Media sendonly = m.withoutAttributes("candidate").withDirection(SdpDirection.SendOnly);
+    assertFalse(sendonly.hasAttribute("candidate"));
+    assertEquals(SdpDirection.SendOnly, sendonly.direction().get());
+    assertEquals(2, m.attributes("candidate").size());
+
+    // the index agrees with attributes(), whatever happens to the list the model was built with.
+    final List<Attribute> attributes = new ArrayList<>(Arrays.asList(new Attribute("sendrecv")));
+    final SessionDescription built = SessionDescription.builder().attributes(attributes).build();
+    assertFalse(built.hasAttribute("ptime"));
+    attributes.add(new Attribute("ptime", "20"));
+    attributes.remove(0);
+    assertEquals(built.attributes().stream().anyMatch(a -> a.getKey().equals("ptime")), built.hasAttribute("ptime"));
+    assertEquals(SdpDirection.SendRecv, built.direction().get());
+
+  }
+
+  @Test
+  public void internPoolSharesEqualValues() throws Exception
+  {
+
+    final String sdp = "v=0\r\n" +
+        "o=- %d 1 IN IP4 10.0.0.1\r\n" +
+        "s=-\r\n" +
+        "c=IN IP4 10.0.0.1\r\n" +
+        "t=0 0\r\n" +
+        "m=audio %d RTP/AVP 0 101\r\n" +
+        "a=rtpmap:101 telephone-event/8000\r\n" +
+        "a=fmtp:101 0-15\r\n" +
+        "a=sendrecv\r\n";
+
+    final SdpInternPool pool = new SdpInternPool(1000);
+    assertEquals(1024, pool.capacity());
+
+    final SdpParserOptions options = SdpParserOptions.DEFAULT.withPool(pool);
+
+    final SessionDescription a = SessionDescription.parse(String.format(sdp, 1, 5004), options);
+    final SessionDescription b = SessionDescription.parse(String.format(sdp, 2, 5006).getBytes(StandardCharsets.UTF_8), options);
+
+    Assert.assertSame(a.connection(), b.connection());
+    Assert.assertSame(a.media(0).attributes().get(0), b.media(0).attributes().get(0));
+    Assert.assertSame(a.media(0).attributes().get(1), b.media(0).attributes().get(1));
+
+    // only equal values are shared.
+    Assert.assertNotSame(a.origin(), b.origin());
+    Assert.assertNotSame(a.media(0), b.media(0));
+
+    final SessionDescription c = SessionDescription.parse(String.format(sdp, 1, 5004), options);
+    Assert.assertSame(a.origin(), c.origin());
+    Assert.assertSame(a.media(0), c.media(0));
+    assertEquals(a, c);
+
+    // builders can go through the pool too.
+    Assert.assertSame(a.connection(),
+        pool.intern(Connection.builder().networkType("IN").addressType("IP4").address("10.0.0.1").build()));
+
+    // as can the push parser.
+    final SdpPushParser push = new SdpPushParser(options);
+    push.feed(String.format(sdp, 3, 5008).getBytes(StandardCharsets.UTF_8));
+    Assert.assertSame(a.connection(), push.complete().connection());
+
+    // pooled media don't keep the text they were first parsed from, so an equal media section from another SDP (here, with an extra
+    // space) doesn't render with the first one's formatting.
+    final SessionDescription d = SessionDescription.parse(String.format(sdp, 1, 5004).replace("RTP/AVP 0", "RTP/AVP  0"), options);
+    Assert.assertSame(a.media(0), d.media(0));
+    assertFalse(d.media(0).serialized().hasSource());
+    assertTrue(d.media(0).toString().startsWith("m=audio 5004 RTP/AVP 0 101\r\n"));
+    assertTrue(d.newVersion().toString().contains("m=audio 5004 RTP/AVP 0 101\r\n"));
+
+  }
+
+  @Test
+  public void modelIsNotChangedThroughCallerLists() throws Exception
+  {
+
+    final List<Attribute> attributes = new ArrayList<>(Arrays.asList(new Attribute("sendrecv")));
+
+    final Media m = Media.rtpAudioBuilder(5004, 0).attributes(attributes).build();
+    final String rendered = m.toString();
+
+    attributes.add(new Attribute("ptime", "20"));
+
+    assertEquals(rendered, m.toString());
+    assertEquals(1, m.attributes().size());
+    assertFalse(m.hasAttribute("ptime"));
+
+    final List<Media> medias = new ArrayList<>(Arrays.asList(m));
+    final SessionDescription sd = SessionDescription.builder().medias(medias).build().withAttributes(attributes);
+    final String sdp = sd.toString();
+
+    medias.clear();
+    attributes.clear();
+
+    assertEquals(sdp, sd.toString());
+    assertEquals(1, sd.medias().size());
+    assertTrue(sd.hasAttribute("ptime"));
+
+    try
+    {
+      Media.builder().protocol("RTP/AVP").build();
+      Assert.fail();
+    }
+    catch (final NullPointerException ex)
+    {
+      // type is required.
+    }
+
+  }
+
 }